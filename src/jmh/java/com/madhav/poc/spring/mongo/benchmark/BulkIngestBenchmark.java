@@ -0,0 +1,62 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.config.ExecutionMode;
+import com.madhav.poc.spring.mongo.services.BulkEncryptionPipeline;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Orders per second through {@link BulkEncryptionPipeline} against a stand-in for MongoDB:
+ * the writer only counts documents and parks for {@code writeLatencyMicros} per chunk,
+ * roughly what an unordered bulk insert round trip costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class BulkIngestBenchmark {
+
+    private static final int ORDERS = 20_000;
+
+    @Param({"500", "2000"})
+    public int chunkSize;
+
+    @Param({"1", "8"})
+    public int parallelism;
+
+    @Param({"2000"})
+    public long writeLatencyMicros;
+
+    private BulkEncryptionPipeline pipeline;
+    private final LongAdder written = new LongAdder();
+
+    @Setup
+    public void setUp() {
+        EncryptionProperties properties = new EncryptionProperties();
+        properties.getBulk().setChunkSize(chunkSize);
+        properties.getBulk().setParallelism(parallelism);
+        pipeline = new BulkEncryptionPipeline(new EncryptionUtil(EntityGraphs.SECRET), EntityGraphs.converter(), properties,
+                new ExecutionMode(false));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public long saveAll() {
+        return pipeline.insertAll(IntStream.range(0, ORDERS).mapToObj(i -> EntityGraphs.order(4, 3)), this::write);
+    }
+
+    private void write(List<Document> documents) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(writeLatencyMicros));
+        written.add(documents.size());
+    }
+}
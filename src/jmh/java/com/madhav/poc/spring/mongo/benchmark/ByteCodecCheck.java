@@ -0,0 +1,131 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.HashUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the pooled {@code ByteCodec} paths produce the same {@code ENC::} and {@code HASH::}
+ * strings as {@link LegacyCrypto} ({@code String.getBytes(UTF_8)} + {@code java.util.Base64}),
+ * and that each side decrypts the other's output. Stored values and hash lookups depend on this,
+ * so any change to {@code ByteCodec} must keep it passing:
+ *
+ * <pre>
+ * mvn -Pjmh compile exec:exec -Djmh.main=com.madhav.poc.spring.mongo.benchmark.ByteCodecCheck
+ * </pre>
+ *
+ * {@link CryptoBenchmark} and {@link HotPathAllocationBenchmark} also run it in their setup,
+ * so they never measure a codec that gives different output.
+ */
+public final class ByteCodecCheck {
+
+    private static final long SEED = 20240601L;
+    private static final int RANDOM_INPUTS = 20_000;
+
+    private ByteCodecCheck() {}
+
+    public static void main(String[] args) {
+        int checked = verify();
+        System.out.println("ByteCodec matches the JDK encoders on " + checked + " inputs");
+    }
+
+    /**
+     * Runs every input through both implementations; returns the number of inputs checked.
+     *
+     * @throws IllegalStateException on the first input where they differ
+     */
+    static int verify() {
+        EncryptionUtil encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        LegacyCrypto legacy = new LegacyCrypto(EntityGraphs.SECRET);
+        List<String> inputs = inputs();
+        for (String input : inputs) {
+            check(encryptionUtil, legacy, input);
+        }
+        return inputs.size();
+    }
+
+    private static void check(EncryptionUtil encryptionUtil, LegacyCrypto legacy, String input) {
+        try {
+            String encrypted = encryptionUtil.encrypt(input);
+            String legacyEncrypted = legacy.encrypt(input);
+            same("encrypt", input, legacyEncrypted, encrypted);
+            same("decrypt", input, legacy.decrypt(legacyEncrypted), encryptionUtil.decrypt(legacyEncrypted));
+            same("sha256Hex", input, LegacyCrypto.sha256Hex(input), HashUtil.sha256Hex(input));
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error checking ByteCodec against " + describe(input), e);
+        }
+    }
+
+    private static void same(String operation, String input, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("ByteCodec changed the " + operation + " output of " + describe(input)
+                    + ": expected " + abbreviate(expected) + " but was " + abbreviate(actual));
+        }
+    }
+
+    // ======== Inputs ========
+
+    private static List<String> inputs() {
+        List<String> inputs = new ArrayList<>();
+        inputs.add("");
+        inputs.add("9999999999");
+        inputs.add("mk0123456789abcdef0123456789abcdef@test.com");
+        // BMP: two- and three-byte UTF-8, including the last char before the surrogate range and after it
+        inputs.add("Zoë Çelik, Straße 12");
+        inputs.add("東京都千代田区 ١٢٣ Привет");
+        inputs.add("\u0080\u07FF\u0800\uD7FF\uE000\uFFFD\uFFFF");
+        // supplementary: surrogate pairs, four-byte UTF-8
+        inputs.add("\uD83D\uDE00 \uD800\uDC00 \uDBFF\uDFFF");
+        inputs.add("a\uD834\uDD1Eb");
+        // unpaired surrogates: lone high, lone low, reversed pair, high at the end
+        inputs.add("\uD800");
+        inputs.add("\uDC00");
+        inputs.add("x\uDC00\uD800y");
+        inputs.add("abc\uD83D");
+        inputs.add("\uD83D\uD83D\uDE00");
+        // every length up to a few AES blocks, so each base64 tail (none, one or two '=') is hit
+        for (int length = 1; length <= 64; length++) {
+            inputs.add("a".repeat(length));
+            inputs.add("é".repeat(length));
+        }
+        // long inputs
+        inputs.add("x".repeat(100_000));
+        inputs.add("Straße \uD83D\uDE00 東京 ".repeat(10_000));
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_INPUTS; i++) {
+            inputs.add(randomString(random, random.nextInt(i % 100 == 0 ? 4_096 : 48)));
+        }
+        return inputs;
+    }
+
+    /** Any char sequence, weighted towards each UTF-8 width and towards lone surrogates */
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(6)) {
+                case 0 -> sb.append((char) random.nextInt(0x80));
+                case 1 -> sb.append((char) (0x80 + random.nextInt(0x800 - 0x80)));
+                case 2 -> sb.append((char) (0x800 + random.nextInt(0x10000 - 0x800)));
+                case 3 -> sb.appendCodePoint(0x10000 + random.nextInt(0x110000 - 0x10000));
+                case 4 -> sb.append((char) (0xD800 + random.nextInt(0x800)));
+                default -> sb.append((char) random.nextInt(0x10000));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String describe(String input) {
+        StringBuilder sb = new StringBuilder("input of length ").append(input.length()).append(" [");
+        input.chars().limit(16).forEach(c -> sb.append(String.format("\\u%04X", c)));
+        return sb.append(input.length() > 16 ? "...]" : "]").toString();
+    }
+
+    private static String abbreviate(String value) {
+        return value.length() > 64 ? value.substring(0, 64) + "..." : value;
+    }
+}
@@ -0,0 +1,113 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.codec.EncryptedFieldConverter;
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.listener.MongoEncryptionListener;
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save and load paths in entity mode (encrypt the entity in place, then convert) vs codec mode
+ * (encrypt while converting to binary; the entity is not touched). Also reports the BSON size of
+ * each stored Document once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"2", "100"})
+    public int bankListSize;
+
+    private MappingMongoConverter entityConverter;
+    private MappingMongoConverter codecConverter;
+    private MongoEncryptionListener entityListener;
+    private MongoEncryptionListener codecListener;
+
+    private Document entityDocument;
+    private Document codecDocument;
+    private Order plainOrder;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        EncryptionUtil encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        entityConverter = EntityGraphs.converter();
+        codecConverter = codecConverter(new EncryptedFieldConverter(encryptionUtil));
+
+        entityListener = EntityGraphs.listener(encryptionUtil, new EncryptionProperties());
+        EncryptionProperties codec = new EncryptionProperties();
+        codec.setMode(EncryptionProperties.Mode.CODEC);
+        codecListener = EntityGraphs.listener(encryptionUtil, codec);
+
+        entityDocument = savePath(entityListener, entityConverter, EntityGraphs.order(4, bankListSize));
+        codecDocument = savePath(codecListener, codecConverter, EntityGraphs.order(4, bankListSize));
+        System.out.printf("%nBSON bytes per order: entity=%d codec=%d%n", bsonSize(entityDocument), bsonSize(codecDocument));
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        plainOrder = EntityGraphs.order(4, bankListSize);
+    }
+
+    @Benchmark
+    public Document saveEntityMode() {
+        return savePath(entityListener, entityConverter, plainOrder);
+    }
+
+    @Benchmark
+    public Document saveCodecMode() {
+        return savePath(codecListener, codecConverter, plainOrder);
+    }
+
+    @Benchmark
+    public Object loadEntityMode() {
+        Order order = entityConverter.read(Order.class, entityDocument);
+        return entityListener.onAfterConvert(order, entityDocument, EntityGraphs.COLLECTION);
+    }
+
+    @Benchmark
+    public Object loadCodecMode() {
+        Order order = codecConverter.read(Order.class, codecDocument);
+        return codecListener.onAfterConvert(order, codecDocument, EntityGraphs.COLLECTION);
+    }
+
+    private static Document savePath(MongoEncryptionListener listener, MappingMongoConverter converter, Order order) {
+        listener.onBeforeConvert(order, EntityGraphs.COLLECTION);
+        Document document = EntityGraphs.toDocument(converter, order);
+        listener.onBeforeSave(order, document, EntityGraphs.COLLECTION);
+        return document;
+    }
+
+    /** What {@code EncryptionConversionsConfig} registers in codec mode, without a Spring context */
+    private static MappingMongoConverter codecConverter(EncryptedFieldConverter fieldConverter) {
+        MongoCustomConversions conversions = MongoCustomConversions.create(adapter ->
+                adapter.configurePropertyConversions(registrar ->
+                        EncryptionMetadata.encryptedFieldsReachableFrom(Order.class).forEach((type, fields) ->
+                                fields.forEach(f -> registrar.registerConverter(type, f.getName(), fieldConverter.forField(f))))));
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static int bsonSize(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+    }
+}
@@ -0,0 +1,65 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.HashUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled Cipher/MessageDigest vs a provider lookup per value. Run with
+ * {@code -prof gc} to see bytes allocated per operation and {@code -t <n>} for contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoBenchmark {
+
+    @Param({"9999999999", "mk0123456789abcdef0123456789abcdef@test.com"})
+    public String plaintext;
+
+    private EncryptionUtil encryptionUtil;
+    private LegacyCrypto legacy;
+    private String ciphertext;
+
+    @Setup
+    public void setUp() {
+        ByteCodecCheck.verify();
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        legacy = new LegacyCrypto(EntityGraphs.SECRET);
+        ciphertext = encryptionUtil.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String pooledEncrypt() {
+        return encryptionUtil.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        return legacy.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String pooledDecrypt() {
+        return encryptionUtil.decrypt(ciphertext);
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        return legacy.decrypt(ciphertext);
+    }
+
+    @Benchmark
+    public String pooledSha256() {
+        return HashUtil.sha256Hex(plaintext);
+    }
+
+    @Benchmark
+    public String legacySha256() throws Exception {
+        return LegacyCrypto.sha256Hex(plaintext);
+    }
+}
@@ -0,0 +1,71 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.DirtyFields;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load an order, change the user's mobile number and prepare the write: the whole encrypted
+ * Document {@code save} sends vs the {@code $set} {@code PartialUpdateService} sends. Both
+ * include reading and decrypting the order, so the difference is the save side alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirtyUpdateBenchmark {
+
+    @Param({"2", "50"})
+    public int bankListSize;
+
+    private EncryptionUtil encryptionUtil;
+    private MappingMongoConverter converter;
+    private Document stored;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        converter = EntityGraphs.converter();
+        Order order = EntityGraphs.order(4, bankListSize);
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, true);
+        stored = EntityGraphs.toDocument(converter, order);
+        EncryptionReflectionUtils.applyHashes(order, stored, encryptionUtil);
+    }
+
+    private Order loadAndEdit() {
+        Order order = converter.read(Order.class, stored);
+        EncryptionReflectionUtils.decryptFetched(order, stored, encryptionUtil);
+        order.getAgent().getLead().getUser().setMobileNumber("9850702373");
+        return order;
+    }
+
+    @Benchmark
+    public Document fullSave() {
+        Order order = loadAndEdit();
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, true);
+        Document document = EntityGraphs.toDocument(converter, order);
+        EncryptionReflectionUtils.applyHashes(order, document, encryptionUtil);
+        return document;
+    }
+
+    @Benchmark
+    public Document dirtySave() {
+        Order order = loadAndEdit();
+        Map<String, String> decrypted = DirtyFields.decryptedValues(order, stored);
+        DirtyFields.encryptChanged(order, stored, decrypted, encryptionUtil);
+        Document document = EntityGraphs.toDocument(converter, order);
+        EncryptionReflectionUtils.applyHashes(order, document, encryptionUtil);
+        Document set = new Document();
+        DirtyFields.diff(stored, document, set, new Document());
+        return set;
+    }
+}
@@ -0,0 +1,81 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deterministic AES/CBC vs randomized AES/GCM ({@code @Encrypted(mode = RANDOMIZED)}), in the
+ * {@code ENC::} string form and the codec binary form. GCM also draws a 12-byte IV from
+ * {@code SecureRandom} per value and appends a 16-byte tag. Run with {@code -prof gc} for bytes
+ * per operation and {@code -t <n>} to see whether the IV source contends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionModeBenchmark {
+
+    @Param({"9999999999", "mk0123456789abcdef0123456789abcdef@test.com"})
+    public String plaintext;
+
+    private EncryptionUtil encryptionUtil;
+    private String cbcText;
+    private String gcmText;
+    private byte[] cbcBinary;
+    private byte[] gcmBinary;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        cbcText = encryptionUtil.encrypt(plaintext, false);
+        gcmText = encryptionUtil.encrypt(plaintext, true);
+        cbcBinary = encryptionUtil.encryptToBinary(plaintext, false);
+        gcmBinary = encryptionUtil.encryptToBinary(plaintext, true);
+        System.out.printf("%nstored length: cbc=%d gcm=%d chars, cbc=%d gcm=%d bytes%n",
+                cbcText.length(), gcmText.length(), cbcBinary.length, gcmBinary.length);
+    }
+
+    @Benchmark
+    public String cbcEncrypt() {
+        return encryptionUtil.encrypt(plaintext, false);
+    }
+
+    @Benchmark
+    public String gcmEncrypt() {
+        return encryptionUtil.encrypt(plaintext, true);
+    }
+
+    @Benchmark
+    public String cbcDecrypt() {
+        return encryptionUtil.decrypt(cbcText);
+    }
+
+    @Benchmark
+    public String gcmDecrypt() {
+        return encryptionUtil.decrypt(gcmText);
+    }
+
+    @Benchmark
+    public byte[] cbcEncryptBinary() {
+        return encryptionUtil.encryptToBinary(plaintext, false);
+    }
+
+    @Benchmark
+    public byte[] gcmEncryptBinary() {
+        return encryptionUtil.encryptToBinary(plaintext, true);
+    }
+
+    @Benchmark
+    public String cbcDecryptBinary() {
+        return encryptionUtil.decryptBinary(cbcBinary);
+    }
+
+    @Benchmark
+    public String gcmDecryptBinary() {
+        return encryptionUtil.decryptBinary(gcmBinary);
+    }
+}
@@ -0,0 +1,74 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.listener.MongoEncryptionListener;
+import com.madhav.poc.spring.mongo.model.*;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.EntitySnapshots;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic Order graphs and an offline converter for the benchmarks.
+ * {@code depth} is how many levels of {@code Order -> Agent -> Lead -> User/Bank} are populated (1..4).
+ */
+final class EntityGraphs {
+
+    static final String SECRET = "1234567890123456";
+    static final String COLLECTION = "star-group-order";
+
+    private EntityGraphs() {}
+
+    static Order order(int depth, int bankListSize) {
+        Order order = new Order();
+        order.setOrderId("order-" + bankListSize);
+        if (depth < 2) return order;
+
+        Agent agent = new Agent();
+        order.setAgent(agent);
+        if (depth < 3) return order;
+
+        List<Bank> banks = new ArrayList<>(bankListSize);
+        for (int i = 0; i < bankListSize; i++) {
+            banks.add(new Bank("IDFC", "IF" + i, String.valueOf(9_000_000_000L + i), null));
+        }
+        Lead lead = new Lead();
+        lead.setBankList(banks);
+        agent.setLead(lead);
+        if (depth < 4) return order;
+
+        User user = new User();
+        user.setName("Madhav");
+        user.setMobileNumber("9999999999");
+        user.setEmail("mk0123456789abcdef@test.com");
+        user.setBankAccountNumber("1234567890");
+        user.setAddress("221B Baker Street");
+        lead.setUser(user);
+        return order;
+    }
+
+    /** Mapping-only converter: no MongoClient, no DbRef resolution. */
+    static MappingMongoConverter converter() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    static Document toDocument(MappingMongoConverter converter, Object entity) {
+        Document document = new Document();
+        converter.write(entity, document);
+        return document;
+    }
+
+    /** Listener wired as in the application, with snapshots taken per {@code properties}. */
+    static MongoEncryptionListener listener(EncryptionUtil encryptionUtil, EncryptionProperties properties) {
+        return new MongoEncryptionListener(encryptionUtil, properties, new EntitySnapshots(properties));
+    }
+}
@@ -0,0 +1,82 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.model.Agent;
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reflection walker vs cached per-class plans, and path-collecting hash resolution vs
+ * {@code HashPlan}. Each round trip encrypts and then decrypts the same graph so every
+ * invocation starts from plaintext.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityWalkerBenchmark {
+
+    @Param({"2", "50"})
+    public int bankListSize;
+
+    private EncryptionUtil encryptionUtil;
+    private Order order;
+    private Order encryptedOrder;
+    private Document encryptedDocument;
+    private Agent agentWithoutPii;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+
+        order = EntityGraphs.order(4, bankListSize);
+        encryptedOrder = EntityGraphs.order(4, bankListSize);
+        EncryptionReflectionUtils.processEntity(encryptedOrder, encryptionUtil, true);
+        encryptedDocument = EntityGraphs.toDocument(EntityGraphs.converter(), encryptedOrder);
+        agentWithoutPii = new Agent();
+    }
+
+    @Benchmark
+    public Order legacyRoundTrip() {
+        LegacyEncryptionWalker.processEntity(order, encryptionUtil, true);
+        LegacyEncryptionWalker.processEntity(order, encryptionUtil, false);
+        return order;
+    }
+
+    @Benchmark
+    public Order plannedRoundTrip() {
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, true);
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, false);
+        return order;
+    }
+
+    @Benchmark
+    public Document legacyHashDocument() {
+        LegacyEncryptionWalker.applyHashes(encryptedOrder, encryptedDocument, encryptionUtil);
+        return encryptedDocument;
+    }
+
+    @Benchmark
+    public Document plannedHashDocument() {
+        EncryptionReflectionUtils.applyHashes(encryptedOrder, encryptedDocument, encryptionUtil);
+        return encryptedDocument;
+    }
+
+    @Benchmark
+    public Agent legacyNoPii() {
+        LegacyEncryptionWalker.processEntity(agentWithoutPii, encryptionUtil, true);
+        return agentWithoutPii;
+    }
+
+    @Benchmark
+    public Agent plannedNoPii() {
+        EncryptionReflectionUtils.processEntity(agentWithoutPii, encryptionUtil, true);
+        return agentWithoutPii;
+    }
+}
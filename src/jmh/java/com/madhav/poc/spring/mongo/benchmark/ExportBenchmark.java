@@ -0,0 +1,131 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.services.StreamingDecryptionPipeline;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Exporting {@code orders} orders as NDJSON to a discarding stream, from a lazily generated
+ * stream of stored Documents standing in for the cursor:
+ * <ul>
+ *     <li>{@code findAllThenWrite}: read and decrypt everything into a List first, as {@code repo.findAll()} does</li>
+ *     <li>{@code sequential}: one order at a time on the calling thread</li>
+ *     <li>{@code pipelined}: {@code StreamingDecryptionPipeline}, chunks decrypted in parallel, in order</li>
+ * </ul>
+ * The score is full exports per second; multiply by {@code orders} for orders per second. The
+ * peak heap used during each iteration (garbage included) is printed after it; only
+ * {@code findAllThenWrite} grows with {@code orders}. Allocation per export with {@code -prof gc}:
+ *
+ * <pre>
+ * mvn -Pjmh compile exec:exec -Djmh.args="ExportBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ExportBenchmark {
+
+    @Param({"10000", "100000"})
+    public int orders;
+
+    private EncryptionUtil encryptionUtil;
+    private MappingMongoConverter converter;
+    private StreamingDecryptionPipeline pipeline;
+    private ObjectMapper objectMapper;
+    private ObjectWriter writer;
+    private Document stored;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        converter = EntityGraphs.converter();
+        pipeline = new StreamingDecryptionPipeline(encryptionUtil, converter, new EncryptionProperties());
+        objectMapper = new ObjectMapper();
+        writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        Order order = EntityGraphs.order(4, 2);
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, true);
+        stored = EntityGraphs.toDocument(converter, order);
+        EncryptionReflectionUtils.applyHashes(order, stored, encryptionUtil);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakHeap() {
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportPeakHeap() {
+        long peak = heapPools().stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+        System.out.printf("%npeak heap: %d MB%n", peak >> 20);
+    }
+
+    private Stream<Document> cursor() {
+        return Stream.generate(() -> stored).limit(orders);
+    }
+
+    @Benchmark
+    public long findAllThenWrite() throws IOException {
+        List<Order> all = cursor().map(this::read).toList();
+        return write(sink -> all.forEach(sink));
+    }
+
+    @Benchmark
+    public long sequential() throws IOException {
+        return write(sink -> cursor().map(this::read).forEach(sink));
+    }
+
+    @Benchmark
+    public long pipelined() throws IOException {
+        return write(sink -> pipeline.decryptAll(cursor(), Order.class, sink));
+    }
+
+    private Order read(Document document) {
+        Order order = converter.read(Order.class, document);
+        EncryptionReflectionUtils.decryptFetched(order, document, encryptionUtil);
+        return order;
+    }
+
+    private long write(Consumer<Consumer<Order>> export) throws IOException {
+        long[] count = {0};
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            export.accept(order -> {
+                try {
+                    writer.writeValue(json, order);
+                    json.writeRaw('\n');
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return count[0];
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream().filter(p -> p.getType() == MemoryType.HEAP).toList();
+    }
+}
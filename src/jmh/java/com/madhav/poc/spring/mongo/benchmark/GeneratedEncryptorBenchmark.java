@@ -0,0 +1,54 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.EntityEncryptors;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypt + decrypt round trip through the {@code <Entity>_Encryptor} classes generated at compile
+ * time ({@code generated=true}) vs the MethodHandle-based reflective walker. Crypto is identical in
+ * both, so the gap is the walk itself; it is widest on small graphs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratedEncryptorBenchmark {
+
+    @Param({"true", "false"})
+    public boolean generated;
+
+    @Param({"2", "50"})
+    public int bankListSize;
+
+    private EncryptionUtil encryptionUtil;
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        if (generated && EntityEncryptors.forClass(Order.class) == null) {
+            throw new IllegalStateException("No generated encryptor for Order; was EncryptorProcessor run?");
+        }
+        EntityEncryptors.setEnabled(generated);
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        order = EntityGraphs.order(4, bankListSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        EntityEncryptors.setEnabled(true);
+    }
+
+    @Benchmark
+    public Order roundTrip() {
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, true);
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, false);
+        return order;
+    }
+}
@@ -0,0 +1,112 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.Hasher;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash columns per {@code encryption.hash} format:
+ * <ul>
+ *     <li>{@code hash}: the value an entity save writes ({@code storedHash})</li>
+ *     <li>{@code queryForms}: the {@code $in} values of a plaintext lookup, with {@code legacy-reads} on</li>
+ *     <li>{@code lookup}: hashing plus a binary search over {@code keys} sorted stored hashes, a stand-in
+ *     for walking an index whose keys are that wide</li>
+ * </ul>
+ * The BSON bytes of one hash column and the total key bytes of {@code keys} values are printed once
+ * per trial. These are in-process proxies; for real index sizes compare
+ * {@code db.orders.stats().indexSizes} before and after the hash migration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashFormatBenchmark {
+
+    /** {@code sha256}, or {@code hmac-<length>-<binary|string>} */
+    @Param({"sha256", "hmac-16-binary", "hmac-8-binary", "hmac-16-string"})
+    public String format;
+
+    @Param({"1000000"})
+    public int keys;
+
+    private Hasher hasher;
+    private byte[][] index;
+    private String[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EncryptionProperties.Hash settings = new EncryptionProperties.Hash();
+        settings.setLegacyReads(true);
+        if (format.startsWith("hmac-")) {
+            String[] parts = format.split("-");
+            settings.setFormat(EncryptionProperties.Hash.Format.HMAC_SHA256);
+            settings.setLength(Integer.parseInt(parts[1]));
+            settings.setBinary(parts[2].equals("binary"));
+        }
+        hasher = new EncryptionUtil(EntityGraphs.SECRET, Map.of(), 1, settings).hasher();
+
+        index = new byte[keys][];
+        long keyBytes = 0;
+        for (int i = 0; i < keys; i++) {
+            Object stored = hasher.storedHash(email(i));
+            index[i] = keyOf(stored);
+            keyBytes += bsonValueSize(stored);
+        }
+        Arrays.sort(index, Arrays::compareUnsigned);
+        probes = new String[1024];
+        for (int i = 0; i < probes.length; i++) probes[i] = email((int) ((i * 7919L) % keys));
+
+        System.out.printf("%nBSON bytes per hash column: %d; key bytes for %d values: %d MB%n",
+                bsonValueSize(hasher.storedHash(email(0))), keys, keyBytes >> 20);
+    }
+
+    private String nextProbe() {
+        return probes[next++ & (probes.length - 1)];
+    }
+
+    @Benchmark
+    public Object hash() {
+        return hasher.storedHash(nextProbe());
+    }
+
+    @Benchmark
+    public List<Object> queryForms() {
+        return hasher.queryForms(nextProbe());
+    }
+
+    @Benchmark
+    public int lookup() {
+        return Arrays.binarySearch(index, keyOf(hasher.storedHash(nextProbe())), Arrays::compareUnsigned);
+    }
+
+    private static String email(int i) {
+        return "customer" + i + "@example.com";
+    }
+
+    private static byte[] keyOf(Object stored) {
+        return stored instanceof Binary b ? b.getData() : ((String) stored).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Bytes the value adds to a one-field Document: type byte, its key and the value itself */
+    private static int bsonValueSize(Object value) {
+        return bsonSize(new Document("k", value)) - bsonSize(new Document());
+    }
+
+    private static int bsonSize(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+    }
+}
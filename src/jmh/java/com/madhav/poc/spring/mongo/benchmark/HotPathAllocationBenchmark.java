@@ -0,0 +1,117 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.HashUtil;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated per field on the hot path, before and after decoding base64 straight from
+ * the stored String and encoding UTF-8 into pooled buffers. The {@code before*} methods keep
+ * the previous allocation pattern ({@code getBytes}, {@code substring}, {@code Base64} decoder)
+ * on an already created Cipher/MessageDigest, so only the buffer handling differs. Compare
+ * {@code gc.alloc.rate.norm}:
+ *
+ * <pre>
+ * mvn -Pjmh compile exec:exec -Djmh.args="HotPathAllocationBenchmark -prof gc"
+ * </pre>
+ *
+ * What is left after the change is the result String itself (plus the GCM parameter spec).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotPathAllocationBenchmark {
+
+    private static final String PREFIX = "ENC::";
+
+    @Param({"9999999999", "mk0123456789abcdef0123456789abcdef@test.com", "Zoë Çelik, Straße 12"})
+    public String plaintext;
+
+    private EncryptionUtil encryptionUtil;
+    private String ciphertext;
+
+    private Cipher cipher;
+    private SecretKeySpec key;
+    private IvParameterSpec iv;
+    private MessageDigest digest;
+
+    @Setup
+    public void setUp() throws Exception {
+        ByteCodecCheck.verify();
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        ciphertext = encryptionUtil.encrypt(plaintext);
+        byte[] key16 = new byte[16];
+        System.arraycopy(EntityGraphs.SECRET.getBytes(StandardCharsets.UTF_8), 0, key16, 0, 16);
+        key = new SecretKeySpec(key16, "AES");
+        iv = new IvParameterSpec(key16);
+        cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        digest = MessageDigest.getInstance("SHA-256");
+    }
+
+    // ======== PREFIX CHECKS (no allocation either way) ========
+
+    @Benchmark
+    public boolean isEncryptedPlaintext() {
+        return encryptionUtil.isEncrypted(plaintext);
+    }
+
+    @Benchmark
+    public boolean isEncryptedCiphertext() {
+        return encryptionUtil.isEncrypted(ciphertext);
+    }
+
+    @Benchmark
+    public boolean isHashedPlaintext() {
+        return HashUtil.isHashed(plaintext);
+    }
+
+    // ======== AFTER ========
+
+    @Benchmark
+    public String afterEncrypt() {
+        return encryptionUtil.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String afterDecrypt() {
+        return encryptionUtil.decrypt(ciphertext);
+    }
+
+    @Benchmark
+    public String afterSha256() {
+        return HashUtil.sha256Hex(plaintext);
+    }
+
+    // ======== BEFORE ========
+
+    @Benchmark
+    public String beforeEncrypt() throws Exception {
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        byte[] encrypted = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        return PREFIX + Base64.getEncoder().encodeToString(encrypted);
+    }
+
+    @Benchmark
+    public String beforeDecrypt() throws Exception {
+        String base64 = ciphertext.substring(PREFIX.length());
+        cipher.init(Cipher.DECRYPT_MODE, key, iv);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(base64)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String beforeSha256() {
+        byte[] hash = digest.digest(plaintext.getBytes(StandardCharsets.UTF_8));
+        return "HASH::" + Base64.getEncoder().encodeToString(hash);
+    }
+}
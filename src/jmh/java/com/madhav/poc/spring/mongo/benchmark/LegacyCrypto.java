@@ -0,0 +1,47 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Baseline copy of the original per-call {@code getInstance} crypto, kept only for the
+ * benchmarks. Produces exactly the same {@code ENC::}/{@code HASH::} strings.
+ */
+final class LegacyCrypto {
+
+    private static final String PREFIX = "ENC::";
+
+    private final SecretKeySpec secretKey;
+    private final IvParameterSpec ivSpec;
+
+    LegacyCrypto(String secret) {
+        byte[] key16 = new byte[16];
+        System.arraycopy(secret.getBytes(StandardCharsets.UTF_8), 0, key16, 0, 16);
+        this.secretKey = new SecretKeySpec(key16, "AES");
+        this.ivSpec = new IvParameterSpec(key16);
+    }
+
+    String encrypt(String plain) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
+        byte[] encrypted = cipher.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+        return PREFIX + Base64.getEncoder().encodeToString(encrypted);
+    }
+
+    String decrypt(String value) throws Exception {
+        String base64 = value.substring(PREFIX.length());
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(base64)), StandardCharsets.UTF_8);
+    }
+
+    static String sha256Hex(String input) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+        return "HASH::" + Base64.getEncoder().encodeToString(hashBytes);
+    }
+}
@@ -0,0 +1,153 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.util.Encrypted;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.HashUtil;
+import org.bson.Document;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Baseline copy of the original per-call reflection walker and path-based hash resolver,
+ * kept only so the benchmarks can compare them against {@code EncryptionMetadata} and
+ * {@code HashPlan}.
+ */
+final class LegacyEncryptionWalker {
+
+    private LegacyEncryptionWalker() {}
+
+    static void processEntity(Object entity, EncryptionUtil encryptionUtil, boolean encrypt) {
+        if (entity == null) return;
+        Class<?> clazz = entity.getClass();
+
+        for (Field f : clazz.getDeclaredFields()) {
+            f.setAccessible(true);
+            try {
+                Object value = f.get(entity);
+                if (value == null) continue;
+
+                boolean annotated = f.isAnnotationPresent(Encrypted.class);
+
+                if (annotated && value instanceof String str) {
+                    if (encrypt && !encryptionUtil.isEncrypted(str)) {
+                        f.set(entity, encryptionUtil.encrypt(str));
+                    } else if (!encrypt && encryptionUtil.isEncrypted(str)) {
+                        f.set(entity, encryptionUtil.decrypt(str));
+                    }
+                    continue;
+                }
+
+                if (annotated && value instanceof Iterable<?> it) {
+                    encryptIterableStrings(it, encryptionUtil, encrypt);
+                    continue;
+                }
+
+                if (!isJavaLangOrPrimitive(f.getType())) {
+                    processEntity(value, encryptionUtil, encrypt);
+                } else if (value instanceof Iterable<?> iterable) {
+                    for (Object item : iterable) processEntity(item, encryptionUtil, encrypt);
+                } else if (value.getClass().isArray()) {
+                    int length = Array.getLength(value);
+                    for (int i = 0; i < length; i++) processEntity(Array.get(value, i), encryptionUtil, encrypt);
+                } else if (value instanceof Map<?, ?> m) {
+                    for (Object v : m.values()) processEntity(v, encryptionUtil, encrypt);
+                }
+
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Error processing encryption", e);
+            }
+        }
+    }
+
+    private static void encryptIterableStrings(Iterable<?> it, EncryptionUtil util, boolean encrypt) {
+        if (!(it instanceof List<?>)) return;
+        @SuppressWarnings("unchecked")
+        ListIterator<Object> li = ((List<Object>) it).listIterator();
+        while (li.hasNext()) {
+            Object v = li.next();
+            if (v instanceof String s) {
+                if (encrypt && !util.isEncrypted(s)) li.set(util.encrypt(s));
+                else if (!encrypt && util.isEncrypted(s)) li.set(util.decrypt(s));
+            } else {
+                processEntity(v, util, encrypt);
+            }
+        }
+    }
+
+    static void collectHashablePaths(Object entity, String basePath, Map<String, String> out) {
+        if (entity == null) return;
+        Class<?> clazz = entity.getClass();
+
+        for (Field f : clazz.getDeclaredFields()) {
+            f.setAccessible(true);
+            final String name = f.getName();
+            final String path = basePath.isEmpty() ? name : basePath + "." + name;
+
+            try {
+                Object value = f.get(entity);
+
+                if (f.isAnnotationPresent(Encrypted.class)) {
+                    Encrypted ann = f.getAnnotation(Encrypted.class);
+                    if (ann.hash()) {
+                        out.put(path, ann.hashFieldName().isBlank() ? (name + "_hash") : ann.hashFieldName());
+                    }
+                }
+
+                if (value == null) continue;
+
+                if (!isJavaLangOrPrimitive(f.getType())) {
+                    collectHashablePaths(value, path, out);
+                } else if (value instanceof Iterable<?> it) {
+                    for (Object item : it) collectHashablePaths(item, path, out);
+                }
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Error collecting hashable paths", e);
+            }
+        }
+    }
+
+    /** Original onBeforeSave: collect paths from the live graph, then resolve each one in the Document. */
+    static void applyHashes(Object entity, Document document, EncryptionUtil util) {
+        Map<String, String> pathsToHashField = new LinkedHashMap<>();
+        collectHashablePaths(entity, "", pathsToHashField);
+        for (Map.Entry<String, String> e : pathsToHashField.entrySet()) {
+            resolveRecurse(document, e.getKey().split("\\."), 0, e.getValue(), util);
+        }
+    }
+
+    private static void resolveRecurse(Object node, String[] parts, int idx, String hashFieldName, EncryptionUtil util) {
+        if (node == null) return;
+        if (node instanceof List<?> list) {
+            for (Object el : list) resolveRecurse(el, parts, idx, hashFieldName, util);
+            return;
+        }
+        if (!(node instanceof Document doc)) return;
+
+        if (idx == parts.length - 1) {
+            if (doc.get(parts[idx]) instanceof String s) {
+                String plaintext = util.isEncrypted(s) ? util.decrypt(s) : s;
+                String computed = HashUtil.sha256Hex(plaintext);
+                if (!(doc.get(hashFieldName) instanceof String ex && ex.equals(computed))) {
+                    doc.put(hashFieldName, computed);
+                }
+            }
+            return;
+        }
+
+        Object child = doc.get(parts[idx]);
+        if (child instanceof Document cdoc) {
+            resolveRecurse(cdoc, parts, idx + 1, hashFieldName, util);
+        } else if (child instanceof List<?> list) {
+            for (Object el : list) resolveRecurse(el, parts, idx + 1, hashFieldName, util);
+        }
+    }
+
+    private static boolean isJavaLangOrPrimitive(Class<?> type) {
+        return type.isPrimitive() || type.getName().startsWith("java.");
+    }
+}
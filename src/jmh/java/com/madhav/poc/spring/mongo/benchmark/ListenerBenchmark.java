@@ -0,0 +1,102 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.listener.MongoEncryptionListener;
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each {@link MongoEncryptionListener} callback on its own, offline.
+ * The encrypt and decrypt callbacks are idempotent, so each invocation gets a fresh graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListenerBenchmark {
+
+    @Param({"2", "4"})
+    public int depth;
+
+    @Param({"2", "100"})
+    public int bankListSize;
+
+    private EncryptionUtil encryptionUtil;
+    private MappingMongoConverter converter;
+    private MongoEncryptionListener listener;
+    private MongoEncryptionListener lazyListener;
+
+    private Order plainOrder;
+    private Order encryptedOrder;
+    private Order savedOrder;
+    private Document savedDocument;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        listener = EntityGraphs.listener(encryptionUtil, new EncryptionProperties());
+
+        EncryptionProperties lazy = new EncryptionProperties();
+        lazy.getDecrypt().setLazy(true);
+        lazyListener = EntityGraphs.listener(encryptionUtil, lazy);
+
+        converter = EntityGraphs.converter();
+        savedOrder = EntityGraphs.order(depth, bankListSize);
+        EncryptionReflectionUtils.processEntity(savedOrder, encryptionUtil, true);
+        savedDocument = EntityGraphs.toDocument(converter, savedOrder);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        plainOrder = EntityGraphs.order(depth, bankListSize);
+        encryptedOrder = EntityGraphs.order(depth, bankListSize);
+        EncryptionReflectionUtils.processEntity(encryptedOrder, encryptionUtil, true);
+    }
+
+    @Benchmark
+    public Object onBeforeConvert() {
+        return listener.onBeforeConvert(plainOrder, EntityGraphs.COLLECTION);
+    }
+
+    @Benchmark
+    public Object onBeforeSave() {
+        return listener.onBeforeSave(savedOrder, savedDocument, EntityGraphs.COLLECTION);
+    }
+
+    @Benchmark
+    public Object onAfterConvert() {
+        return listener.onAfterConvert(encryptedOrder, savedDocument, EntityGraphs.COLLECTION);
+    }
+
+    /** Lazy mode: only the walk, no AES, until a getter is called */
+    @Benchmark
+    public Object onAfterConvertLazy() {
+        return lazyListener.onAfterConvert(encryptedOrder, savedDocument, EntityGraphs.COLLECTION);
+    }
+
+    /** Full save: encrypt (hashing from plaintext), convert, then fill Document-only hashes */
+    @Benchmark
+    public Document savePath() {
+        listener.onBeforeConvert(plainOrder, EntityGraphs.COLLECTION);
+        Document document = EntityGraphs.toDocument(converter, plainOrder);
+        listener.onBeforeSave(plainOrder, document, EntityGraphs.COLLECTION);
+        return document;
+    }
+
+    /** Original save: encrypt, convert, then decrypt every hashed value back to hash it */
+    @Benchmark
+    public Document savePathLegacy() {
+        LegacyEncryptionWalker.processEntity(plainOrder, encryptionUtil, true);
+        Document document = EntityGraphs.toDocument(converter, plainOrder);
+        LegacyEncryptionWalker.applyHashes(plainOrder, document, encryptionUtil);
+        return document;
+    }
+}
@@ -0,0 +1,67 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.listener.MongoEncryptionListener;
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionMetrics;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save and load callbacks with {@link EncryptionMetrics} off ({@code sampleRate = 0}),
+ * sampled (the default, 64) and timing every call (1). Sampled should be within 1% of off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"0", "64", "1"})
+    public int sampleRate;
+
+    private EncryptionUtil encryptionUtil;
+    private MongoEncryptionListener listener;
+    private Document savedDocument;
+
+    private Order plainOrder;
+    private Order encryptedOrder;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        EncryptionMetrics.configure(sampleRate > 0, sampleRate);
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        listener = EntityGraphs.listener(encryptionUtil, new EncryptionProperties());
+        Order saved = EntityGraphs.order(2, 10);
+        EncryptionReflectionUtils.processEntity(saved, encryptionUtil, true);
+        savedDocument = EntityGraphs.toDocument(EntityGraphs.converter(), saved);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        EncryptionMetrics.configure(true, 64);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        plainOrder = EntityGraphs.order(2, 10);
+        encryptedOrder = EntityGraphs.order(2, 10);
+        EncryptionReflectionUtils.processEntity(encryptedOrder, encryptionUtil, true);
+    }
+
+    @Benchmark
+    public Object onBeforeConvert() {
+        return listener.onBeforeConvert(plainOrder, EntityGraphs.COLLECTION);
+    }
+
+    @Benchmark
+    public Object onAfterConvert() {
+        return listener.onAfterConvert(encryptedOrder, savedDocument, EntityGraphs.COLLECTION);
+    }
+}
@@ -0,0 +1,71 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.listener.MongoEncryptionListener;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-entity cost of the generic listener on a collection without PII, against a
+ * {@code baseline} that just returns the entity. The difference should be within noise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NonPiiListenerBenchmark {
+
+    /** Typical non-PII document: scalars, a nested object and a list */
+    public static class AuditEvent {
+        private String id;
+        private String type;
+        private Instant at;
+        private Source source = new Source();
+        private List<String> tags = List.of("a", "b");
+        private Map<String, Integer> counters = Map.of("x", 1);
+    }
+
+    public static class Source {
+        private String host = "app-1";
+        private int port = 8080;
+    }
+
+    private MongoEncryptionListener listener;
+    private AuditEvent event;
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        listener = EntityGraphs.listener(new EncryptionUtil(EntityGraphs.SECRET), new EncryptionProperties());
+        event = new AuditEvent();
+        document = new Document("type", "login");
+    }
+
+    @Benchmark
+    public Object baseline() {
+        return event;
+    }
+
+    @Benchmark
+    public Object onBeforeConvert() {
+        return listener.onBeforeConvert(event, "audit");
+    }
+
+    @Benchmark
+    public Object onBeforeSave() {
+        return listener.onBeforeSave(event, document, "audit");
+    }
+
+    @Benchmark
+    public Object onAfterConvert() {
+        return listener.onAfterConvert(event, document, "audit");
+    }
+}
@@ -0,0 +1,66 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.ParallelFanOut;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypt and decrypt passes over one order with a large {@code bankList}, sequential
+ * ({@code threshold = 0} disables splitting) vs split across a ForkJoin pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelFanOutBenchmark {
+
+    @Param({"100", "5000"})
+    public int bankListSize;
+
+    @Param({"0", "1000"})
+    public int threshold;
+
+    private EncryptionUtil encryptionUtil;
+    private ForkJoinPool pool;
+    private Order plainOrder;
+    private Order encryptedOrder;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        ParallelFanOut.configure(threshold == 0 ? Integer.MAX_VALUE : threshold, pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        ParallelFanOut.configure(1000, ForkJoinPool.commonPool());
+        pool.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        plainOrder = EntityGraphs.order(4, bankListSize);
+        encryptedOrder = EntityGraphs.order(4, bankListSize);
+        EncryptionReflectionUtils.processEntity(encryptedOrder, encryptionUtil, true);
+    }
+
+    @Benchmark
+    public Order encrypt() {
+        EncryptionReflectionUtils.processEntity(plainOrder, encryptionUtil, true);
+        return plainOrder;
+    }
+
+    @Benchmark
+    public Order decrypt() {
+        EncryptionReflectionUtils.processEntity(encryptedOrder, encryptionUtil, false);
+        return encryptedOrder;
+    }
+}
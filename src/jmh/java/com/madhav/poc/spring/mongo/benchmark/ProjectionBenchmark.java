@@ -0,0 +1,68 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading one dashboard row ({@code orderId} and the email) from a full Document vs from the
+ * projection {@code OrderRepository.findDashboardRows} fetches, mapping included. The
+ * {@code projectedWalkAll} variant walks the plan without the Document, as
+ * {@code onAfterConvert} did before, so the gap to {@code projected} is the lockstep walk alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    @Param({"2", "50"})
+    public int bankListSize;
+
+    private EncryptionUtil encryptionUtil;
+    private MappingMongoConverter converter;
+    private Document fullDocument;
+    private Document projectedDocument;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+        converter = EntityGraphs.converter();
+
+        Order order = EntityGraphs.order(4, bankListSize);
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, true);
+        fullDocument = EntityGraphs.toDocument(converter, order);
+
+        Document user = fullDocument.get("agent", Document.class).get("lead", Document.class).get("user", Document.class);
+        projectedDocument = new Document("orderId", fullDocument.get("orderId"))
+                .append("agent", new Document("lead", new Document("user", new Document("email", user.get("email")))));
+    }
+
+    @Benchmark
+    public Order full() {
+        Order order = converter.read(Order.class, fullDocument);
+        EncryptionReflectionUtils.decryptFetched(order, fullDocument, encryptionUtil);
+        return order;
+    }
+
+    @Benchmark
+    public Order projectedWalkAll() {
+        Order order = converter.read(Order.class, projectedDocument);
+        EncryptionReflectionUtils.processEntity(order, encryptionUtil, false);
+        return order;
+    }
+
+    @Benchmark
+    public Order projected() {
+        Order order = converter.read(Order.class, projectedDocument);
+        EncryptionReflectionUtils.decryptFetched(order, projectedDocument, encryptionUtil);
+        return order;
+    }
+}
@@ -0,0 +1,137 @@
+package com.madhav.poc.spring.mongo.benchmark;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.listener.MongoEncryptionListener;
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load test of the order create-and-read path on platform vs virtual threads.
+ * {@code clients} simulated users each send a request as soon as their previous one completes.
+ * Requests run on either a fixed pool of {@code platformThreads} (Tomcat's default maximum is 200)
+ * or one virtual thread per request. Each request runs the real encryption callbacks and
+ * converter, plus two blocking round trips to a stand-in MongoDB that sleeps for {@code rttMillis}
+ * (insert, then findById). It prints throughput and p50/p99/max latency per mode.
+ *
+ * <pre>
+ * mvn -Pjmh compile exec:exec -Djmh.main=com.madhav.poc.spring.mongo.benchmark.VirtualThreadLoadTest \
+ *     -Djmh.args="clients=2000 requests=50000 rttMillis=5 platformThreads=200"
+ * </pre>
+ *
+ * The stand-in only sleeps, so this measures how each threading model copes with waiting.
+ * A real driver may also block in its connection pool ({@code maxPoolSize}), which limits
+ * both modes the same way.
+ */
+public final class VirtualThreadLoadTest {
+
+    private final EncryptionUtil encryptionUtil = new EncryptionUtil(EntityGraphs.SECRET);
+    private final MongoEncryptionListener listener = EntityGraphs.listener(encryptionUtil, new EncryptionProperties());
+    private final MappingMongoConverter converter = EntityGraphs.converter();
+    private final long rttMillis;
+
+    private VirtualThreadLoadTest(long rttMillis) {
+        this.rttMillis = rttMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            if (kv.length == 2) options.put(kv[0], kv[1]);
+        }
+        int clients = Integer.parseInt(options.getOrDefault("clients", "2000"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "50000"));
+        long rttMillis = Long.parseLong(options.getOrDefault("rttMillis", "5"));
+        int platformThreads = Integer.parseInt(options.getOrDefault("platformThreads", "200"));
+
+        VirtualThreadLoadTest test = new VirtualThreadLoadTest(rttMillis);
+        System.out.printf("clients=%d requests=%d rttMillis=%d platformThreads=%d%n",
+                clients, requests, rttMillis, platformThreads);
+
+        // warm up both paths, then measure
+        test.run(Executors.newFixedThreadPool(platformThreads), clients, requests / 10);
+        test.run(Executors.newVirtualThreadPerTaskExecutor(), clients, requests / 10);
+
+        Result platform = test.run(Executors.newFixedThreadPool(platformThreads), clients, requests);
+        Result virtual = test.run(Executors.newVirtualThreadPerTaskExecutor(), clients, requests);
+
+        System.out.printf("%-10s %12s %10s %10s %10s%n", "mode", "req/s", "p50 ms", "p99 ms", "max ms");
+        platform.print("platform");
+        virtual.print("virtual");
+    }
+
+    private Result run(ExecutorService executor, int clients, int requests) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger completed = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(clients);
+
+        long start = System.nanoTime();
+        try (executor) {
+            for (int i = 0; i < requests; i++) {
+                inFlight.acquire();
+                long issued = System.nanoTime();
+                executor.execute(() -> {
+                    try {
+                        handle();
+                    } finally {
+                        latencies[completed.getAndIncrement()] = System.nanoTime() - issued;
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new Result(requests * 1e9 / elapsed,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1]);
+    }
+
+    /** One request: create an order, then read it back */
+    private void handle() {
+        Order order = EntityGraphs.order(4, 3);
+        listener.onBeforeConvert(order, EntityGraphs.COLLECTION);
+        Document document = EntityGraphs.toDocument(converter, order);
+        listener.onBeforeSave(order, document, EntityGraphs.COLLECTION);
+        roundTrip(); // insert
+
+        roundTrip(); // findById
+        Order loaded = converter.read(Order.class, document);
+        listener.onAfterConvert(loaded, document, EntityGraphs.COLLECTION);
+    }
+
+    /** Stand-in for a MongoDB round trip */
+    private void roundTrip() {
+        try {
+            Thread.sleep(rttMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private record Result(double throughput, long p50, long p99, long max) {
+        void print(String mode) {
+            System.out.printf("%-10s %12.0f %10.2f %10.2f %10.2f%n", mode, throughput,
+                    ms(p50), ms(p99), ms(max));
+        }
+
+        private static double ms(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.madhav.poc.spring.mongo.config;
+
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+/**
+ * Resolves stored field names through the mapping context, so {@code @Field} renames and the
+ * configured {@code FieldNamingStrategy} apply to decryption, hash plans, rewritten queries and
+ * indexes. Installed as soon as the mapping context is initialized, before anything compiles a
+ * plan from it.
+ */
+@Configuration
+public class DocumentKeysConfig {
+
+    @Bean
+    public static BeanPostProcessor documentKeysInstaller() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof MongoMappingContext mappingContext) {
+                    EncryptionMetadata.useDocumentKeys((type, field) -> documentKey(mappingContext, type, field));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /** Stored name of {@code type}'s property {@code field}, or null if it is not a mapped property */
+    private static String documentKey(MongoMappingContext mappingContext, Class<?> type, String field) {
+        MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(type);
+        MongoPersistentProperty property = entity == null ? null : entity.getPersistentProperty(field);
+        return property == null ? null : property.getFieldName();
+    }
+}
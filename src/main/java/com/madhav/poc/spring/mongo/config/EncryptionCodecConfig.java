@@ -0,0 +1,22 @@
+package com.madhav.poc.spring.mongo.config;
+
+import com.madhav.poc.spring.mongo.codec.EncryptedFieldConverter;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * {@code encryption.mode=codec}: provides the {@link EncryptedFieldConverter} that
+ * {@link EncryptionConversionsConfig} registers for every {@code @Encrypted} String property
+ * reachable from a {@code @Document} class.
+ */
+@Configuration
+@ConditionalOnProperty(name = "encryption.mode", havingValue = "codec")
+public class EncryptionCodecConfig {
+
+    @Bean
+    public EncryptedFieldConverter encryptedFieldConverter(EncryptionUtil encryptionUtil) {
+        return new EncryptedFieldConverter(encryptionUtil);
+    }
+}
@@ -0,0 +1,66 @@
+package com.madhav.poc.spring.mongo.config;
+
+import com.madhav.poc.spring.mongo.codec.EncryptedFieldConverter;
+import com.madhav.poc.spring.mongo.codec.HashColumnConverter;
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.domain.EntityScanner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Property converters of every {@code @Document} class, replacing Boot's default
+ * {@link MongoCustomConversions}:
+ * <ul>
+ *     <li>{@code encryption.mode=codec}: {@link EncryptedFieldConverter} on every reachable {@code @Encrypted} String property</li>
+ *     <li>binary {@code encryption.hash} format: {@link HashColumnConverter} on every hash column an entity carries</li>
+ * </ul>
+ */
+@Configuration
+public class EncryptionConversionsConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions(ApplicationContext context, EncryptionUtil encryptionUtil,
+                                                         ObjectProvider<EncryptedFieldConverter> codecConverter)
+            throws ClassNotFoundException {
+        Map<Class<?>, List<Field>> encrypted = new LinkedHashMap<>();
+        Map<Class<?>, List<Field>> hashes = new LinkedHashMap<>();
+        for (Class<?> entity : new EntityScanner(context).scan(Document.class)) {
+            EncryptionMetadata.encryptedFieldsReachableFrom(entity).forEach(encrypted::putIfAbsent);
+            EncryptionMetadata.hashFieldsReachableFrom(entity).forEach(hashes::putIfAbsent);
+        }
+
+        EncryptedFieldConverter converter = codecConverter.getIfAvailable();
+        if (converter != null) {
+            encrypted.values().stream().flatMap(List::stream)
+                    .filter(f -> f.getType() != String.class)
+                    .findFirst()
+                    .ifPresent(f -> {
+                        throw new IllegalStateException("encryption.mode=codec supports @Encrypted String fields only, not "
+                                + f.getDeclaringClass().getSimpleName() + "." + f.getName() + "; use encryption.mode=entity");
+                    });
+        }
+        HashColumnConverter hashConverter = encryptionUtil.hasher().storesBinary()
+                ? new HashColumnConverter(encryptionUtil.hasher()) : null;
+
+        return MongoCustomConversions.create(adapter -> adapter.configurePropertyConversions(registrar -> {
+            if (converter != null) {
+                encrypted.forEach((type, declared) ->
+                        declared.forEach(f -> registrar.registerConverter(type, f.getName(), converter.forField(f))));
+            }
+            if (hashConverter != null) {
+                hashes.forEach((type, declared) ->
+                        declared.forEach(f -> registrar.registerConverter(type, f.getName(), hashConverter)));
+            }
+        }));
+    }
+}
@@ -0,0 +1,76 @@
+package com.madhav.poc.spring.mongo.config;
+
+import com.madhav.poc.spring.mongo.util.EncryptionMetrics;
+import com.madhav.poc.spring.mongo.util.LazyDecryption;
+import com.madhav.poc.spring.mongo.util.QueryValueCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class EncryptionMetricsConfig {
+
+    @Bean
+    public MeterBinder lazyDecryptionMetrics() {
+        return registry -> {
+            FunctionCounter.builder("encryption.lazy.deferred", LazyDecryption.class, c -> LazyDecryption.deferredCount())
+                    .description("Encrypted values left as ciphertext on load")
+                    .register(registry);
+            FunctionCounter.builder("encryption.lazy.revealed", LazyDecryption.class, c -> LazyDecryption.revealedCount())
+                    .description("Lazily kept values decrypted on first access")
+                    .register(registry);
+            Gauge.builder("encryption.lazy.avoided", LazyDecryption.class, c -> LazyDecryption.avoidedCount())
+                    .description("Decrypts skipped compared to eager decryption")
+                    .register(registry);
+        };
+    }
+
+    /** {@code cache.gets} (hit/miss), {@code cache.evictions}, {@code cache.size}, tagged by cache name */
+    @Bean
+    public MeterBinder queryValueCacheMetrics(QueryValueCache queryValueCache) {
+        return registry -> {
+            if (queryValueCache.ciphertextCache() != null) {
+                CaffeineCacheMetrics.monitor(registry, queryValueCache.ciphertextCache(), "encryption.query.ciphertext");
+            }
+        };
+    }
+
+    /**
+     * Sampled timers per crypto primitive ({@code encryption.crypto}), entity pass
+     * ({@code encryption.entity}) and {@code @Encrypted} field ({@code encryption.field}), each with
+     * a {@code .bytes} counter, plus {@code encryption.field.skipped} and
+     * {@code encryption.decrypt.failures}. Field and entity meters appear as classes are first used.
+     */
+    @Bean
+    public MeterBinder encryptionStageMetrics(EncryptionProperties properties) {
+        EncryptionMetrics.configure(properties.getMetrics().isEnabled(), properties.getMetrics().getSampleRate());
+        return registry -> EncryptionMetrics.bind(probe -> {
+            if (!properties.getMetrics().isEnabled()) return;
+            Tags tags = Tags.of(probe.tags().toArray(new String[0]));
+            if (probe.timed()) {
+                FunctionTimer.builder(probe.name(), probe,
+                                p -> (long) p.count(), EncryptionMetrics.Probe::totalNanos, TimeUnit.NANOSECONDS)
+                        .description(probe.description())
+                        .tags(tags)
+                        .register(registry);
+                FunctionCounter.builder(probe.name() + ".bytes", probe, EncryptionMetrics.Probe::bytes)
+                        .description(probe.description() + ", input size")
+                        .baseUnit("bytes")
+                        .tags(tags)
+                        .register(registry);
+            } else {
+                FunctionCounter.builder(probe.name(), probe, EncryptionMetrics.Probe::count)
+                        .description(probe.description())
+                        .tags(tags)
+                        .register(registry);
+            }
+        });
+    }
+}
@@ -0,0 +1,200 @@
+package com.madhav.poc.spring.mongo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "encryption")
+public class EncryptionProperties {
+
+    /** Key version 1, written as {@code ENC::} */
+    private String secret;
+
+    /** Further key versions (2, 3, ...) written as {@code ENC:v<n>::}; old versions stay readable */
+    private Map<Integer, String> keys = new HashMap<>();
+
+    /** Version used for new ciphertext */
+    private int activeVersion = 1;
+
+    /** How {@code @Encrypted} fields reach MongoDB */
+    private Mode mode = Mode.ENTITY;
+
+    private Decrypt decrypt = new Decrypt();
+
+    private Bulk bulk = new Bulk();
+
+    private Rotation rotation = new Rotation();
+
+    private QueryCache queryCache = new QueryCache();
+
+    private Metrics metrics = new Metrics();
+
+    private Reactive reactive = new Reactive();
+
+    private Parallel parallel = new Parallel();
+
+    private Indexes indexes = new Indexes();
+
+    private Generated generated = new Generated();
+
+    private DirtyTracking dirtyTracking = new DirtyTracking();
+
+    private Export export = new Export();
+
+    private Search search = new Search();
+
+    private Hash hash = new Hash();
+
+    public enum Mode {
+        /** Entities are encrypted in place before conversion and decrypted after; values stored as ENC:: strings */
+        ENTITY,
+        /** Fields are encrypted while converted to BSON and stored as binary; entities keep plaintext */
+        CODEC
+    }
+
+    @Data
+    public static class Decrypt {
+        /**
+         * Keep {@code @Encrypted(lazy = true)} fields as ciphertext after loading and decrypt
+         * them on first read through their getter.
+         */
+        private boolean lazy = false;
+    }
+
+    @Data
+    public static class Bulk {
+        /** Documents per unordered bulk insert */
+        private int chunkSize = 1000;
+
+        /** Threads encrypting and hashing a chunk */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /** Chunks being written while the next one is prepared; the source stream waits beyond this */
+        private int maxInFlight = 2;
+    }
+
+    @Data
+    public static class Rotation {
+        /** _id ranges re-encrypted in parallel */
+        private int partitions = 4;
+
+        /** Documents per bulk update and checkpoint */
+        private int batchSize = 500;
+
+        /** Upper bound on documents processed per second across all partitions; 0 = unthrottled */
+        private int maxOpsPerSecond = 2000;
+    }
+
+    @Data
+    public static class QueryCache {
+        /** Cache the ciphertext forms of query values (e.g. emails looked up repeatedly) */
+        private boolean enabled = false;
+
+        /** Entries per cache; beyond this the least valuable (rarely or long unused) entries are evicted */
+        private long maximumSize = 10_000;
+
+        /** Time an entry is kept after it was computed */
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Metrics {
+        /** Publish encrypt/decrypt/hash timings and counts under encryption.* */
+        private boolean enabled = true;
+
+        /** Time one in this many operations (rounded up to a power of two); 1 times every call */
+        private int sampleRate = 64;
+    }
+
+    @Data
+    public static class Reactive {
+        /** Threads of the scheduler running reactive encrypt/decrypt/hash work off the event loop */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class Parallel {
+        /** Collections inside one entity with at least this many elements are encrypted/decrypted in parallel */
+        private int threshold = 1000;
+
+        /** Threads for splitting those collections when not already on a ForkJoin worker */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class Indexes {
+        /** Create indexes on the hash columns of {@code @Encrypted(hash = true)} fields at startup */
+        private boolean autoCreate = true;
+
+        /** Log repository queries on hash columns that no index supports */
+        private boolean reportMissing = true;
+    }
+
+    @Data
+    public static class Generated {
+        /** Use the encryptors EncryptorProcessor generated at compile time; false walks every entity by reflection */
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class DirtyTracking {
+        /** Keep what each loaded entity looked like, so PartialUpdateService can $set only what changed */
+        private boolean enabled = false;
+
+        /** Entities tracked at once; beyond this the least recently used fall back to full saves */
+        private long maximumSize = 100_000;
+    }
+
+    @Data
+    public static class Export {
+        /** Documents the MongoDB cursor fetches per round trip */
+        private int batchSize = 1000;
+
+        /** Documents converted and decrypted together */
+        private int chunkSize = 500;
+
+        /** Threads decrypting a chunk */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /** Chunks decrypted ahead of the one being written; the cursor waits beyond this */
+        private int maxInFlight = 4;
+
+        /** Async request timeout of the export alone; other async requests keep spring.mvc.async.request-timeout */
+        private Duration timeout = Duration.ofMinutes(30);
+    }
+
+    @Data
+    public static class Search {
+        /** Documents a @BlindIndex search reads before checking their decrypted values */
+        private int maxCandidates = 1000;
+    }
+
+    @Data
+    public static class Hash {
+        /** How hash columns are computed */
+        private Format format = Format.SHA256;
+
+        /** HMAC key; blank derives one from encryption.secret */
+        private String key;
+
+        /** Leading bytes of the HMAC kept, 8..32 */
+        private int length = 16;
+
+        /** Store HMAC hashes as BSON binary rather than HMAC:: strings */
+        private boolean binary = true;
+
+        /** Also match SHA256 HASH:: values in rewritten queries, until the hash migration has finished */
+        private boolean legacyReads = false;
+
+        public enum Format {
+            /** Unkeyed SHA-256, stored as a HASH::base64 string (the original format) */
+            SHA256,
+            /** Keyed HMAC-SHA-256, truncated to {@code length} bytes */
+            HMAC_SHA256
+        }
+    }
+}
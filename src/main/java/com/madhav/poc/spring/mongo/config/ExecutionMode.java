@@ -0,0 +1,44 @@
+package com.madhav.poc.spring.mongo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Platform or virtual threads, following {@code spring.threads.virtual.enabled} like Tomcat's
+ * request threads do. Executors for blocking MongoDB work come from here so they switch together
+ * with the web layer; CPU-bound crypto keeps its own fixed-size pools either way.
+ */
+@Component
+public class ExecutionMode {
+
+    private final boolean virtual;
+
+    @Autowired
+    public ExecutionMode(Environment environment) {
+        this(Threading.VIRTUAL.isActive(environment));
+    }
+
+    public ExecutionMode(boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Executor for tasks that mostly wait on MongoDB: a new virtual thread per task, or a fixed
+     * pool of {@code threads} platform threads. Callers bound their own concurrency.
+     */
+    public ExecutorService ioExecutor(String name, int threads) {
+        if (virtual) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(threads, Thread.ofPlatform().name(name + "-", 0).factory());
+    }
+}
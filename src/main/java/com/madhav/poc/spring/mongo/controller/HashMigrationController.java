@@ -0,0 +1,26 @@
+package com.madhav.poc.spring.mongo.controller;
+
+import com.madhav.poc.spring.mongo.services.HashMigrationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/admin/hash-migration")
+@RequiredArgsConstructor
+public class HashMigrationController {
+
+    private final HashMigrationService hashMigrationService;
+
+    @PostMapping
+    public HashMigrationService.Status start() {
+        return hashMigrationService.start();
+    }
+
+    @GetMapping
+    public HashMigrationService.Status status() {
+        return hashMigrationService.status();
+    }
+}
@@ -0,0 +1,26 @@
+package com.madhav.poc.spring.mongo.controller;
+
+import com.madhav.poc.spring.mongo.services.KeyRotationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/admin/key-rotation")
+@RequiredArgsConstructor
+public class KeyRotationController {
+
+    private final KeyRotationService keyRotationService;
+
+    @PostMapping
+    public KeyRotationService.Status start() {
+        return keyRotationService.start();
+    }
+
+    @GetMapping
+    public KeyRotationService.Status status() {
+        return keyRotationService.status();
+    }
+}
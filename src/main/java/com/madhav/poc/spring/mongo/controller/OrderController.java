@@ -1,16 +1,26 @@
 package com.madhav.poc.spring.mongo.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
 import com.madhav.poc.spring.mongo.model.*;
 import com.madhav.poc.spring.mongo.services.OrderService;
-import com.madhav.poc.spring.mongo.util.HashUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -21,6 +31,8 @@ import java.util.UUID;
 public class OrderController {
 
     private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+    private final EncryptionProperties properties;
 
     @PostMapping
     public String create() {
@@ -62,9 +74,7 @@ public class OrderController {
         orderList.forEach(System.out::println);
 
         System.out.println("***********************  Now verifying with Hashed Email *********************** ");
-        String emailHash = HashUtil.sha256Hex(mail);
-        System.out.println("Generated Hash is " + emailHash);
-        Optional<Order> optionalOrder = orderService.findByAgentLeadUserEmailHash(emailHash);
+        Optional<Order> optionalOrder = orderService.findByEmail(mail);
         optionalOrder.ifPresent( o -> {
             try {
                 System.out.println(new ObjectMapper().writeValueAsString(o));
@@ -80,4 +90,44 @@ public class OrderController {
     public void update() {
         orderService.update();
     }
+
+    @GetMapping("/dashboard")
+    public List<OrderSummary> dashboard(@RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "50") int size) {
+        return orderService.dashboard(page, size);
+    }
+
+    @GetMapping("/search/mobile")
+    public List<Order> searchByMobile(@RequestParam String endsWith) {
+        return orderService.findByMobileEndingWith(endsWith);
+    }
+
+    @GetMapping("/search/email")
+    public List<Order> searchByEmailDomain(@RequestParam String domain) {
+        return orderService.findByEmailDomain(domain);
+    }
+
+    /** Every order, decrypted, one JSON object per line; written as it is read, never held in full */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody export(HttpServletRequest request) {
+        // a full export outlives the default async timeout; only this request gets the longer one
+        WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest()
+                .setTimeout(properties.getExport().getTimeout().toMillis());
+        // flushed by the response buffer, not after every row
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                // lines are separated by '\n' below, not by Jackson's default root separator " "
+                json.setRootValueSeparator(null);
+                orderService.exportAll(order -> {
+                    try {
+                        writer.writeValue(json, order);
+                        json.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
 }
@@ -0,0 +1,226 @@
+package com.madhav.poc.spring.mongo.index;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.repository.PlaintextQuery;
+import com.madhav.poc.spring.mongo.util.HashPlan;
+import com.madhav.poc.spring.mongo.util.HashPlan.BlindTarget;
+import com.madhav.poc.spring.mongo.util.HashPlan.Target;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.core.support.RepositoryFactoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the indexes of the hash columns written for {@code @Encrypted(hash = true)} fields when
+ * the application starts, then reports repository query methods that filter on a hash column
+ * without an index to support them. Indexes follow {@link HashPlan#targets()}: one per hash
+ * column, multikey where the path goes through a List, unique or compound when the annotation
+ * asks for it. Creating an index that already exists is a no-op; one whose options changed is
+ * reported and left to be dropped by hand. The token arrays of {@code @BlindIndex} fields get a
+ * multikey index each.
+ */
+@Slf4j
+@Component
+public class HashIndexManager implements SmartInitializingSingleton {
+
+    /** {@code ?0}, {@code ?#{...}} and {@code :#{...}} placeholders of a {@code @Query} */
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\?\\d+|[?:]#\\{[^}]*}");
+
+    private final MongoTemplate mongoTemplate;
+    private final ListableBeanFactory beanFactory;
+    private final EncryptionProperties properties;
+    private final MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext;
+
+    public HashIndexManager(MongoTemplate mongoTemplate, ListableBeanFactory beanFactory, EncryptionProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.beanFactory = beanFactory;
+        this.properties = properties;
+        this.mappingContext = mongoTemplate.getConverter().getMappingContext();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        EncryptionProperties.Indexes settings = properties.getIndexes();
+        if (!settings.isAutoCreate() && !settings.isReportMissing()) return;
+        Map<String, List<Target>> targets = targetsByCollection();
+        if (settings.isAutoCreate()) {
+            targets.forEach(this::ensureIndexes);
+            blindTargetsByCollection().forEach(this::ensureBlindIndexes);
+        }
+        if (settings.isReportMissing()) {
+            unsupportedQueries(targets).forEach(log::warn);
+        }
+    }
+
+    /** Hash columns of every {@code @Document} entity, by collection */
+    public Map<String, List<Target>> targetsByCollection() {
+        Map<String, List<Target>> out = new LinkedHashMap<>();
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) continue;
+            List<Target> targets = HashPlan.forClass(entity.getType()).targets();
+            if (!targets.isEmpty()) {
+                out.computeIfAbsent(entity.getCollection(), c -> new ArrayList<>()).addAll(targets);
+            }
+        }
+        return out;
+    }
+
+    /** Token arrays of every {@code @Document} entity's blind indexes, by collection */
+    public Map<String, List<BlindTarget>> blindTargetsByCollection() {
+        Map<String, List<BlindTarget>> out = new LinkedHashMap<>();
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) continue;
+            List<BlindTarget> targets = HashPlan.forClass(entity.getType()).blindTargets();
+            if (!targets.isEmpty()) {
+                out.computeIfAbsent(entity.getCollection(), c -> new ArrayList<>()).addAll(targets);
+            }
+        }
+        return out;
+    }
+
+    private void ensureBlindIndexes(String collection, List<BlindTarget> targets) {
+        IndexOperations ops = mongoTemplate.indexOps(collection);
+        for (BlindTarget target : targets) {
+            if (!target.indexable()) {
+                log.warn("Blind index {} of '{}' is inside a Map and cannot be indexed by path", target.indexPath(), collection);
+                continue;
+            }
+            try {
+                String name = ops.createIndex(new Index().on(target.indexPath(), Sort.Direction.ASC));
+                log.info("Index {} on '{}' ready for blind index {}", name, collection, target.indexPath());
+            } catch (RuntimeException e) {
+                log.warn("Could not create index for blind index {} of '{}': {}", target.indexPath(), collection, e.getMessage());
+            }
+        }
+    }
+
+    private void ensureIndexes(String collection, List<Target> targets) {
+        IndexOperations ops = mongoTemplate.indexOps(collection);
+        for (Target target : targets) {
+            if (!target.indexable()) {
+                log.warn("Hash column {} of '{}' is inside a Map and cannot be indexed by path", target.hashPath(), collection);
+                continue;
+            }
+            Index index = new Index().on(target.hashPath(), Sort.Direction.ASC);
+            target.indexWith().forEach(path -> index.on(path, Sort.Direction.ASC));
+            if (target.unique()) index.unique().sparse();
+            try {
+                String name = ops.createIndex(index);
+                log.info("Index {} on '{}' ready for hash column {}", name, collection, target.hashPath());
+            } catch (RuntimeException e) {
+                // e.g. an index on the same keys with other options; MongoDB will not change it in place
+                log.warn("Could not create index for hash column {} of '{}': {}", target.hashPath(), collection, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One message per repository query method that filters on a hash column no index leads with,
+     * or on a {@code *Hash} / {@code *_hash} field that no {@code @Encrypted} field writes.
+     */
+    public List<String> unsupportedQueries(Map<String, List<Target>> targets) {
+        List<String> messages = new ArrayList<>();
+        Map<String, List<List<String>>> indexesByCollection = new HashMap<>();
+        for (String name : beanFactory.getBeanNamesForType(RepositoryFactoryInformation.class, false, false)) {
+            RepositoryInformation repository = beanFactory.getBean(name, RepositoryFactoryInformation.class)
+                    .getRepositoryInformation();
+            Class<?> domainType = repository.getDomainType();
+            String collection = mappingContext.getRequiredPersistentEntity(domainType).getCollection();
+            Set<String> hashPaths = new HashSet<>();
+            Map<String, String> rewrites = new HashMap<>();
+            targets.getOrDefault(collection, List.of()).forEach(t -> {
+                hashPaths.add(t.hashPath());
+                rewrites.put(t.path(), t.hashPath());
+            });
+
+            for (Method method : repository.getQueryMethods()) {
+                Set<String> fields = queriedFields(method, domainType, rewrites);
+                List<String> hashFields = fields.stream().filter(f -> hashPaths.contains(f) || looksLikeHash(f)).toList();
+                if (hashFields.isEmpty()) continue;
+
+                String where = repository.getRepositoryInterface().getSimpleName() + "." + method.getName();
+                hashFields.stream().filter(f -> !hashPaths.contains(f)).forEach(f -> messages.add(String.format(
+                        "%s filters on %s, which no @Encrypted(hash = true) field of '%s' writes", where, f, collection)));
+
+                List<List<String>> indexes = indexesByCollection.computeIfAbsent(collection, this::indexKeys);
+                boolean supported = indexes.stream().anyMatch(keys -> !keys.isEmpty() && fields.contains(keys.get(0)));
+                if (!supported) {
+                    messages.add(String.format("%s filters on hash column(s) %s of '%s' without a supporting index",
+                            where, hashFields, collection));
+                }
+            }
+        }
+        return messages;
+    }
+
+    private List<List<String>> indexKeys(String collection) {
+        return mongoTemplate.indexOps(collection).getIndexInfo().stream()
+                .map(info -> info.getIndexFields().stream().map(IndexField::getKey).toList())
+                .toList();
+    }
+
+    /**
+     * Document field paths a query method filters on, from its {@code @Query} or its derived name.
+     * Plaintext paths of derived and {@link PlaintextQuery} methods are replaced by the hash
+     * columns {@code HashedQueryPostProcessor} rewrites them to.
+     */
+    private Set<String> queriedFields(Method method, Class<?> domainType, Map<String, String> rewrites) {
+        Set<String> fields = new LinkedHashSet<>();
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        boolean rewritten = true;
+        try {
+            if (query != null && !query.value().isBlank()) {
+                collectKeys(Document.parse(PLACEHOLDER.matcher(query.value()).replaceAll("null")), fields);
+                rewritten = method.isAnnotationPresent(PlaintextQuery.class);
+            } else {
+                for (Part part : new PartTree(method.getName(), domainType).getParts()) {
+                    fields.add(mappingContext.getPersistentPropertyPath(part.getProperty())
+                            .toDotPath(MongoPersistentProperty::getFieldName));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.debug("Skipping index check of {}: {}", method, e.getMessage());
+        }
+        if (!rewritten) return fields;
+        Set<String> mapped = new LinkedHashSet<>();
+        fields.forEach(f -> mapped.add(rewrites.getOrDefault(f, f)));
+        return mapped;
+    }
+
+    /** Field paths of a filter, looking inside $and / $or / $nor */
+    private static void collectKeys(Document filter, Set<String> out) {
+        filter.forEach((key, value) -> {
+            if (!key.startsWith("$")) {
+                out.add(key);
+            } else if (value instanceof List<?> clauses) {
+                clauses.forEach(c -> {
+                    if (c instanceof Document d) collectKeys(d, out);
+                });
+            }
+        });
+    }
+
+    private static boolean looksLikeHash(String path) {
+        String field = path.substring(path.lastIndexOf('.') + 1);
+        return field.endsWith("Hash") || field.endsWith("_hash");
+    }
+}
@@ -1,10 +1,15 @@
 package com.madhav.poc.spring.mongo.listener;
 
-import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata;
 import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
 import com.madhav.poc.spring.mongo.util.EncryptionUtil;
-import com.madhav.poc.spring.mongo.util.HashUtil;
-import com.madhav.poc.spring.mongo.util.Encrypted;
+import com.madhav.poc.spring.mongo.util.EntityEncryptors;
+import com.madhav.poc.spring.mongo.util.EntitySnapshots;
+import com.madhav.poc.spring.mongo.util.LazyDecryption;
+import com.madhav.poc.spring.mongo.util.ParallelFanOut;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import org.bson.Document;
 import org.springframework.data.mongodb.core.mapping.event.AfterConvertCallback;
@@ -12,50 +17,80 @@ import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback
 import org.springframework.data.mongodb.core.mapping.event.BeforeSaveCallback;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Field;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Encryption callbacks for every mapped entity type. Types without {@code @Encrypted} fields
+ * anywhere under them are detected from the cached class plan and returned untouched.
+ * In {@code encryption.mode=codec} the converter encrypts and decrypts, and only hashing runs here.
+ */
 @Component
 @RequiredArgsConstructor
 public class MongoEncryptionListener implements
-        BeforeConvertCallback<Order>,
-        AfterConvertCallback<Order>,
-        BeforeSaveCallback<Order> {
+        BeforeConvertCallback<Object>,
+        AfterConvertCallback<Object>,
+        BeforeSaveCallback<Object> {
 
     private final EncryptionUtil encryptionUtil;
+    private final EncryptionProperties properties;
+    private final EntitySnapshots snapshots;
+    private ForkJoinPool fanOutPool;
+
+    @PostConstruct
+    void init() {
+        if (properties.getDecrypt().isLazy()) {
+            LazyDecryption.enable(encryptionUtil);
+        }
+        EntityEncryptors.setEnabled(properties.getGenerated().isEnabled());
+        fanOutPool = new ForkJoinPool(properties.getParallel().getParallelism());
+        ParallelFanOut.configure(properties.getParallel().getThreshold(), fanOutPool);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ParallelFanOut.configure(Integer.MAX_VALUE, ForkJoinPool.commonPool());
+        fanOutPool.shutdown();
+    }
 
     @Override
-    public Order onBeforeConvert(Order order, String collection) {
+    public Object onBeforeConvert(Object entity, String collection) {
+        if (isCodec() || !EncryptionMetadata.hasEncryptedFields(entity.getClass())) return entity;
+        // saved in full: a snapshot taken before would no longer match what is stored
+        snapshots.forget(entity);
         // Encrypt annotated fields in the entity graph, idempotently
-        EncryptionReflectionUtils.processEntity(order, encryptionUtil, true);
-        return order;
+        EncryptionReflectionUtils.processEntity(entity, encryptionUtil, true);
+        return entity;
     }
 
     @Override
-    public Order onAfterConvert(Order order, Document document, String collection) {
-        // Decrypt annotated fields in the entity graph, idempotently
-        EncryptionReflectionUtils.processEntity(order, encryptionUtil, false);
-        return order;
+    public Object onAfterConvert(Object entity, Document document, String collection) {
+        if (isCodec() || !EncryptionMetadata.hasEncryptedFields(entity.getClass())) return entity;
+        decrypt(entity, document);
+        snapshots.track(entity, document);
+        return entity;
+    }
+
+    /** Decrypt annotated fields in the entity graph, idempotently; only paths the query projected are visited */
+    void decrypt(Object entity, Document document) {
+        if (properties.getDecrypt().isLazy()) {
+            EncryptionReflectionUtils.deferDecryption(entity, document, encryptionUtil);
+        } else {
+            EncryptionReflectionUtils.decryptFetched(entity, document, encryptionUtil);
+        }
     }
 
     @Override
-    public Order onBeforeSave(Order order, Document document, String collection) {
-        // Build unique set of "<dottedPath> -> <hashFieldName>" from entity shape
-        Map<String, String> pathsToHashField = new LinkedHashMap<>();
-        EncryptionReflectionUtils.collectHashablePaths(order, "", pathsToHashField);
-
-        // For each path, traverse the BSON Document and add/update sibling hash fields,
-        // handling nested Documents, Lists/arrays, and Maps.
-        for (Map.Entry<String, String> e : pathsToHashField.entrySet()) {
-            EncryptionReflectionUtils.resolveAndHash(
-                    document,
-                    e.getKey(),
-                    e.getValue(),
-                    encryptionUtil,
-                    HashUtil::sha256Hex
-            );
+    public Object onBeforeSave(Object entity, Document document, String collection) {
+        if (!EncryptionMetadata.hasEncryptedFields(entity.getClass())) return entity;
+        if (isCodec()) {
+            EncryptionReflectionUtils.applyHashesFromEntity(entity, document, encryptionUtil);
+        } else {
+            EncryptionReflectionUtils.applyHashes(entity, document, encryptionUtil);
         }
-        return order;
+        return entity;
+    }
+
+    boolean isCodec() {
+        return properties.getMode() == EncryptionProperties.Mode.CODEC;
     }
 }
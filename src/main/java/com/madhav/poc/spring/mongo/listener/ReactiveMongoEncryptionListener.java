@@ -0,0 +1,81 @@
+package com.madhav.poc.spring.mongo.listener;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata;
+import com.madhav.poc.spring.mongo.util.HashPlan;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveAfterConvertCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeSaveCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Reactive counterpart of {@link MongoEncryptionListener}, used by {@code ReactiveMongoTemplate}
+ * and reactive repositories. The work itself is delegated to the blocking listener; steps that
+ * run AES or SHA-256 are moved to a bounded parallel scheduler so driver event-loop threads
+ * never do crypto. Each callback handles one entity, so a {@code Flux} read is decrypted
+ * element by element as it streams. In {@code encryption.mode=codec} encryption happens inside
+ * the converter, which the reactive template runs on the subscribing thread. Entities read here
+ * are not snapshotted: {@code PartialUpdateService} only saves through the blocking template.
+ */
+@Component
+public class ReactiveMongoEncryptionListener implements
+        ReactiveBeforeConvertCallback<Object>,
+        ReactiveAfterConvertCallback<Object>,
+        ReactiveBeforeSaveCallback<Object> {
+
+    private final MongoEncryptionListener delegate;
+    private final EncryptionProperties properties;
+    private final Scheduler scheduler;
+
+    public ReactiveMongoEncryptionListener(MongoEncryptionListener delegate, EncryptionProperties properties) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.scheduler = Schedulers.newParallel("encryption", properties.getReactive().getParallelism());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.dispose();
+    }
+
+    @Override
+    public Publisher<Object> onBeforeConvert(Object entity, String collection) {
+        if (delegate.isCodec() || !EncryptionMetadata.hasEncryptedFields(entity.getClass())) return Mono.just(entity);
+        return offload(() -> delegate.onBeforeConvert(entity, collection));
+    }
+
+    @Override
+    public Publisher<Object> onAfterConvert(Object entity, Document document, String collection) {
+        if (delegate.isCodec() || !EncryptionMetadata.hasEncryptedFields(entity.getClass())) return Mono.just(entity);
+        if (properties.getDecrypt().isLazy()) {
+            // lazy fields stay encrypted: only non-lazy ones are decrypted, usually cheap enough inline
+            return Mono.fromCallable(() -> decrypt(entity, document));
+        }
+        return offload(() -> decrypt(entity, document));
+    }
+
+    @Override
+    public Publisher<Object> onBeforeSave(Object entity, Document document, String collection) {
+        // hashes carried by entity fields were set in onBeforeConvert; only Document-only ones cost anything here
+        HashPlan plan = HashPlan.forClass(entity.getClass());
+        if (delegate.isCodec() ? plan.targets().isEmpty() : plan.isEmpty()) return Mono.just(entity);
+        return offload(() -> delegate.onBeforeSave(entity, document, collection));
+    }
+
+    private Object decrypt(Object entity, Document document) {
+        delegate.decrypt(entity, document);
+        return entity;
+    }
+
+    private Mono<Object> offload(Callable<Object> work) {
+        return Mono.fromCallable(work).subscribeOn(scheduler);
+    }
+}
@@ -0,0 +1,246 @@
+package com.madhav.poc.spring.mongo.migration;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.config.ExecutionMode;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Streams a collection in {@code _id} order, applies a {@link DocumentRewriter} to each Document
+ * and writes the changes back with unordered bulk updates.
+ *
+ * <p>The collection is split into {@code partitions} ranges of ObjectId creation time, processed
+ * in parallel. After each batch the last {@code _id} of the partition is saved in
+ * {@value #CHECKPOINTS}, so a job started again under the same name resumes where it stopped
+ * instead of rescanning. The plan is written in one bulk write and each checkpoint records how
+ * many partitions it belongs to; a plan interrupted before all of them were stored is made again.
+ * Every update is filtered on the values it replaces: a document the application saved in the
+ * meantime is counted as a conflict and skipped.
+ */
+public class CollectionMigrationJob {
+
+    public static final String CHECKPOINTS = "encryption-migration-checkpoints";
+
+    private final MongoTemplate mongoTemplate;
+    private final String collection;
+    private final String jobName;
+    private final DocumentRewriter rewriter;
+    private final EncryptionProperties.Rotation settings;
+    private final ExecutionMode executionMode;
+    private final Throttle throttle;
+
+    public CollectionMigrationJob(MongoTemplate mongoTemplate, String collection, String jobName,
+                                  DocumentRewriter rewriter, EncryptionProperties.Rotation settings,
+                                  ExecutionMode executionMode) {
+        this.mongoTemplate = mongoTemplate;
+        this.collection = collection;
+        this.jobName = jobName;
+        this.rewriter = rewriter;
+        this.settings = settings;
+        this.executionMode = executionMode;
+        this.throttle = new Throttle(settings.getMaxOpsPerSecond());
+    }
+
+    public String jobName() {
+        return jobName;
+    }
+
+    /** Runs (or resumes) every unfinished partition and blocks until all are done. */
+    public void run() {
+        List<Checkpoint> existing = checkpoints();
+        List<Checkpoint> pending = isPlanned(existing) ? existing.stream().filter(c -> !c.done()).toList() : plan();
+        if (pending.isEmpty()) return;
+
+        try (ExecutorService workers = executionMode.ioExecutor(jobName, pending.size())) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Checkpoint c : pending) futures.add(workers.submit(() -> runPartition(c)));
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while migrating " + collection, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while migrating " + collection, e.getCause());
+        }
+    }
+
+    /** Progress of every partition of this job, in partition order. */
+    public List<Checkpoint> checkpoints() {
+        Query query = Query.query(Criteria.where("job").is(jobName)).with(Sort.by("partition"));
+        return mongoTemplate.find(query, Document.class, CHECKPOINTS).stream().map(Checkpoint::from).toList();
+    }
+
+    // ======== PARTITIONING ========
+
+    /** True if every planned partition has its checkpoint; partitions only start once all are stored */
+    private static boolean isPlanned(List<Checkpoint> existing) {
+        return !existing.isEmpty() && existing.stream().allMatch(c -> c.partitions() == existing.size());
+    }
+
+    /**
+     * Splits [first _id, last _id] into equal time ranges; the last one is open-ended.
+     * Collections keyed by something other than ObjectId get a single partition. Checkpoints
+     * left by an incomplete plan are replaced.
+     */
+    private List<Checkpoint> plan() {
+        ObjectId first = boundary(Sort.Direction.ASC);
+        ObjectId last = boundary(Sort.Direction.DESC);
+
+        long from = first == null ? 0 : first.getTimestamp();
+        long span = first == null || last == null ? 1 : last.getTimestamp() - from + 1;
+        int partitions = (int) Math.max(1, Math.min(settings.getPartitions(), span));
+
+        mongoTemplate.remove(Query.query(Criteria.where("job").is(jobName)), CHECKPOINTS);
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CHECKPOINTS);
+        List<Checkpoint> plan = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            ObjectId lower = i == 0 ? null : idAt(from + span * i / partitions);
+            ObjectId upper = i == partitions - 1 ? null : idAt(from + span * (i + 1) / partitions);
+            Checkpoint c = new Checkpoint(i, partitions, lower, upper, null, false, 0, 0, 0);
+            ops.upsert(checkpointId(c), checkpointUpdate(c));
+            plan.add(c);
+        }
+        ops.execute();
+        return plan;
+    }
+
+    private ObjectId boundary(Sort.Direction direction) {
+        Query query = new Query().with(Sort.by(direction, "_id")).limit(1);
+        query.fields().include("_id");
+        Document doc = mongoTemplate.findOne(query, Document.class, collection);
+        return doc != null && doc.get("_id") instanceof ObjectId id ? id : null;
+    }
+
+    /** Smallest ObjectId created in the given second */
+    private static ObjectId idAt(long epochSeconds) {
+        return new ObjectId(new Date(epochSeconds * 1000));
+    }
+
+    // ======== PARTITION WORKER ========
+
+    private void runPartition(Checkpoint start) {
+        Criteria range = Criteria.where("_id");
+        if (start.lastId() != null) range.gt(start.lastId());
+        else if (start.lower() != null) range.gte(start.lower());
+        else range.exists(true);
+        if (start.upper() != null) range.lt(start.upper());
+
+        Query query = Query.query(range).with(Sort.by("_id")).cursorBatchSize(settings.getBatchSize());
+
+        Checkpoint progress = start;
+        List<Document> batch = new ArrayList<>(settings.getBatchSize());
+        try (Stream<Document> stream = mongoTemplate.stream(query, Document.class, collection)) {
+            Iterator<Document> it = stream.iterator();
+            while (it.hasNext()) {
+                throttle.acquire();
+                batch.add(it.next());
+                if (batch.size() == settings.getBatchSize()) {
+                    progress = flush(progress, batch);
+                    batch.clear();
+                }
+            }
+        }
+        progress = flush(progress, batch);
+        save(progress.finished());
+    }
+
+    private Checkpoint flush(Checkpoint progress, List<Document> batch) {
+        if (batch.isEmpty()) return progress;
+
+        BulkOperations ops = null;
+        int updates = 0;
+        List<DocumentRewriter.Change> changes = new ArrayList<>();
+        for (Document doc : batch) {
+            changes.clear();
+            rewriter.rewrite(doc, changes);
+            if (changes.isEmpty()) continue;
+
+            Criteria filter = Criteria.where("_id").is(doc.get("_id"));
+            Update update = new Update();
+            for (DocumentRewriter.Change c : changes) {
+                filter.and(c.path()).is(c.oldValue());
+                update.set(c.path(), c.newValue());
+            }
+            if (ops == null) ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+            ops.updateOne(Query.query(filter), update);
+            updates++;
+        }
+
+        long matched = ops == null ? 0 : ops.execute().getMatchedCount();
+        Object lastId = batch.get(batch.size() - 1).get("_id");
+        Checkpoint next = progress.advance(lastId, batch.size(), matched, updates - matched);
+        save(next);
+        return next;
+    }
+
+    private void save(Checkpoint c) {
+        mongoTemplate.upsert(checkpointId(c), checkpointUpdate(c), CHECKPOINTS);
+    }
+
+    private Query checkpointId(Checkpoint c) {
+        return Query.query(Criteria.where("_id").is(jobName + ":" + c.partition()));
+    }
+
+    private Update checkpointUpdate(Checkpoint c) {
+        return new Update()
+                .set("job", jobName)
+                .set("collection", collection)
+                .set("partition", c.partition())
+                .set("partitions", c.partitions())
+                .set("lower", c.lower())
+                .set("upper", c.upper())
+                .set("lastId", c.lastId())
+                .set("done", c.done())
+                .set("scanned", c.scanned())
+                .set("updated", c.updated())
+                .set("conflicts", c.conflicts())
+                .currentDate("updatedAt");
+    }
+
+    /**
+     * Progress of one {@code _id} range.
+     *
+     * @param partitions number of partitions in the job's plan
+     * @param lower     inclusive lower bound, null for the first partition
+     * @param upper     exclusive upper bound, null for the last partition
+     * @param lastId    last {@code _id} written back, null before the first batch
+     * @param conflicts documents changed by the application after they were read; left as they are
+     */
+    public record Checkpoint(int partition, int partitions,
+                             @JsonSerialize(using = ToStringSerializer.class) ObjectId lower,
+                             @JsonSerialize(using = ToStringSerializer.class) ObjectId upper,
+                             @JsonSerialize(using = ToStringSerializer.class) Object lastId,
+                             boolean done, long scanned, long updated, long conflicts) {
+
+        Checkpoint advance(Object lastId, long scanned, long updated, long conflicts) {
+            return new Checkpoint(partition, partitions, lower, upper, lastId, false,
+                    this.scanned + scanned, this.updated + updated, this.conflicts + conflicts);
+        }
+
+        Checkpoint finished() {
+            return new Checkpoint(partition, partitions, lower, upper, lastId, true, scanned, updated, conflicts);
+        }
+
+        static Checkpoint from(Document doc) {
+            return new Checkpoint(doc.getInteger("partition"), doc.getInteger("partitions", 0),
+                    doc.getObjectId("lower"), doc.getObjectId("upper"),
+                    doc.get("lastId"), doc.getBoolean("done", false),
+                    count(doc, "scanned"), count(doc, "updated"), count(doc, "conflicts"));
+        }
+
+        private static long count(Document doc, String key) {
+            return doc.get(key) instanceof Number n ? n.longValue() : 0;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.madhav.poc.spring.mongo.migration;
+
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * Computes the in-place changes a stored Document needs. Used by {@link CollectionMigrationJob},
+ * which applies them with a {@code $set} guarded by the old values, so a document changed by the
+ * application in the meantime is left alone.
+ */
+@FunctionalInterface
+public interface DocumentRewriter {
+
+    /** Adds a change for every value to rewrite; adds nothing if the document is up to date. */
+    void rewrite(Document document, List<Change> changes);
+
+    /**
+     * @param path     dotted path with array indexes, e.g. {@code agent.lead.bankList.1.phone}
+     * @param oldValue value currently stored, used as the optimistic filter
+     * @param newValue value to {@code $set}
+     */
+    record Change(String path, Object oldValue, Object newValue) {}
+}
@@ -0,0 +1,83 @@
+package com.madhav.poc.spring.mongo.migration;
+
+import com.madhav.poc.spring.mongo.codec.EncryptedFieldConverter;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.HashPlan;
+import com.madhav.poc.spring.mongo.util.Hasher;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites hash columns stored in another format, such as {@code HASH::} strings written before
+ * {@code encryption.hash.format} changed, to the configured one. The hash is recomputed from
+ * the decrypted sibling value. Like {@link KeyRotationRewriter} the Document is walked as
+ * stored, so hash columns inside lists, map values and recursive types are all found; a field
+ * is only rewritten if it already holds a hash and sits next to the value it hashes. Columns
+ * are matched by name, so targets giving one column name to two value fields are rejected.
+ */
+public class HashFormatRewriter implements DocumentRewriter {
+
+    private final EncryptionUtil encryptionUtil;
+    private final Hasher hasher;
+    /** Hash column name to the name of the value it hashes, e.g. {@code email_hash -> email} */
+    private final Map<String, String> hashedBy = new LinkedHashMap<>();
+
+    public HashFormatRewriter(EncryptionUtil encryptionUtil, List<HashPlan.Target> targets) {
+        this.encryptionUtil = encryptionUtil;
+        this.hasher = encryptionUtil.hasher();
+        for (HashPlan.Target t : targets) {
+            String hashField = lastSegment(t.hashPath());
+            String valueField = lastSegment(t.path());
+            String other = hashedBy.putIfAbsent(hashField, valueField);
+            if (other != null && !other.equals(valueField)) {
+                throw new IllegalStateException("Cannot rewrite hash column " + hashField + ": it hashes both "
+                        + other + " and " + valueField);
+            }
+        }
+    }
+
+    @Override
+    public void rewrite(Document document, List<Change> changes) {
+        rewriteHashes("", document, changes);
+        for (var e : document.entrySet()) {
+            if (!e.getKey().equals("_id")) visit(e.getKey(), e.getValue(), changes);
+        }
+    }
+
+    private void visit(String path, Object value, List<Change> changes) {
+        if (value instanceof Document d) {
+            rewriteHashes(path + ".", d, changes);
+            for (var e : d.entrySet()) visit(path + "." + e.getKey(), e.getValue(), changes);
+        } else if (value instanceof List<?> list) {
+            for (int i = 0; i < list.size(); i++) visit(path + "." + i, list.get(i), changes);
+        }
+    }
+
+    private void rewriteHashes(String prefix, Document d, List<Change> changes) {
+        hashedBy.forEach((hashField, valueField) -> {
+            Object hash = d.get(hashField);
+            if (!isStoredHash(hash) || hasher.isCurrentStored(hash)) return;
+            String plain = plaintext(d.get(valueField));
+            if (plain != null) changes.add(new Change(prefix + hashField, hash, hasher.storedHash(plain)));
+        });
+    }
+
+    private boolean isStoredHash(Object value) {
+        if (value instanceof String s) return hasher.isHashed(s);
+        return value instanceof Binary b && b.getType() == Hasher.SUBTYPE;
+    }
+
+    private String plaintext(Object stored) {
+        if (stored instanceof String s) return encryptionUtil.decrypt(s); // ENC:: string or plaintext
+        if (EncryptedFieldConverter.isEncryptedBinary(stored)) return encryptionUtil.decryptBinary(((Binary) stored).getData());
+        return null;
+    }
+
+    private static String lastSegment(String path) {
+        return path.substring(path.lastIndexOf('.') + 1);
+    }
+}
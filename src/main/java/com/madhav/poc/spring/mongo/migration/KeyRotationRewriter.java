@@ -0,0 +1,48 @@
+package com.madhav.poc.spring.mongo.migration;
+
+import com.madhav.poc.spring.mongo.codec.EncryptedFieldConverter;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.util.List;
+
+/**
+ * Re-encrypts every ciphertext written under an older key version with the active key.
+ * The Document is walked as stored, so any encrypted value is found whatever entity wrote it,
+ * including elements of lists and map values, in both the {@code ENC::} string and the codec
+ * mode binary form. Each value keeps its deterministic or randomized form. Hash fields are
+ * hashes of the plaintext and do not change.
+ */
+public class KeyRotationRewriter implements DocumentRewriter {
+
+    private final EncryptionUtil encryptionUtil;
+
+    public KeyRotationRewriter(EncryptionUtil encryptionUtil) {
+        this.encryptionUtil = encryptionUtil;
+    }
+
+    @Override
+    public void rewrite(Document document, List<Change> changes) {
+        for (var e : document.entrySet()) {
+            if (!e.getKey().equals("_id")) visit(e.getKey(), e.getValue(), changes);
+        }
+    }
+
+    private void visit(String path, Object value, List<Change> changes) {
+        if (value instanceof String s) {
+            if (encryptionUtil.isEncrypted(s) && !encryptionUtil.isCurrent(s)) {
+                changes.add(new Change(path, s, encryptionUtil.reencrypt(s)));
+            }
+        } else if (EncryptedFieldConverter.isEncryptedBinary(value)) {
+            byte[] data = ((Binary) value).getData();
+            if (encryptionUtil.binaryVersionOf(data) != encryptionUtil.activeVersion()) {
+                changes.add(new Change(path, value, EncryptedFieldConverter.toBinary(encryptionUtil.reencryptBinary(data))));
+            }
+        } else if (value instanceof Document d) {
+            for (var e : d.entrySet()) visit(path + "." + e.getKey(), e.getValue(), changes);
+        } else if (value instanceof List<?> list) {
+            for (int i = 0; i < list.size(); i++) visit(path + "." + i, list.get(i), changes);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.madhav.poc.spring.mongo.migration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces callers to a fixed rate shared by all threads. Each permit reserves the next time
+ * slot; callers that are ahead of schedule park until their slot comes up.
+ */
+final class Throttle {
+
+    private final long intervalNanos;
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    /** @param permitsPerSecond 0 or less disables throttling */
+    Throttle(int permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0;
+    }
+
+    void acquire() {
+        if (intervalNanos == 0) return;
+        long now = System.nanoTime();
+        // an idle throttle does not bank permits: a slot in the past starts again from now
+        long slot = nextSlot.getAndAccumulate(now, (next, n) -> Math.max(next, n) + intervalNanos);
+        long wait = slot - now;
+        while (wait > 0) {
+            LockSupport.parkNanos(wait);
+            wait = slot - System.nanoTime();
+        }
+    }
+}
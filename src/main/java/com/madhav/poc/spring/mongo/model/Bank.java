@@ -1,23 +1,31 @@
 package com.madhav.poc.spring.mongo.model;
 
 import com.madhav.poc.spring.mongo.util.Encrypted;
+import com.madhav.poc.spring.mongo.util.LazyDecryption;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@ToString
+// the getter of the lazy phone decrypts it; printing or hashing a Bank must not
+@ToString(doNotUseGetters = true)
+@EqualsAndHashCode(doNotUseGetters = true)
 public class Bank {
 
     private String bankName;
 
     private String ifscCode;
 
-    @Encrypted(hash = true, hashFieldName = "phoneHash")
+    @Encrypted(hash = true, hashFieldName = "phoneHash", lazy = true, mode = Encrypted.Mode.RANDOMIZED)
     private String phone;
 
     private String phoneHash;
+
+    public String getPhone() {
+        return phone = LazyDecryption.reveal(phone);
+    }
 }
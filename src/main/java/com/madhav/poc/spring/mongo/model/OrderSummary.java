@@ -0,0 +1,16 @@
+package com.madhav.poc.spring.mongo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Dashboard row: built from an Order read with only orderId and the email projected */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderSummary {
+
+    private String orderId;
+
+    private String maskedEmail;
+}
@@ -1,33 +1,54 @@
 package com.madhav.poc.spring.mongo.model;
 
 
+import com.madhav.poc.spring.mongo.util.BlindIndex;
 import com.madhav.poc.spring.mongo.util.Encrypted;
+import com.madhav.poc.spring.mongo.util.LazyDecryption;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+// the getters of lazy fields decrypt them; printing or hashing a User must not
+@ToString(doNotUseGetters = true)
+@EqualsAndHashCode(doNotUseGetters = true)
 public class User {
 
     private String name;
 
-    @Encrypted(hash = true, hashFieldName = "mobileNumberHash")
+    // blind index: "mobile ending in 4567"
+    @Encrypted(hash = true, hashFieldName = "mobileNumberHash", lazy = true, mode = Encrypted.Mode.RANDOMIZED,
+            blindIndex = @BlindIndex(suffixes = 4, fieldName = "mobileNumberIndex"))
     private String mobileNumber;
 
     private String mobileNumberHash;
 
-    @Encrypted(hash = true, hashFieldName = "emailHash")
+    // deterministic: OrderRepository matches stored email ciphertext; blind index: "email domain = x"
+    @Encrypted(hash = true, hashFieldName = "emailHash", lazy = true,
+            blindIndex = @BlindIndex(after = "@", fieldName = "emailIndex"))
     private String email;
 
     private String emailHash;
 
-    @Encrypted
+    @Encrypted(lazy = true, mode = Encrypted.Mode.RANDOMIZED)
     private String bankAccountNumber;
 
     private String address;
 
+    public String getMobileNumber() {
+        return mobileNumber = LazyDecryption.reveal(mobileNumber);
+    }
 
+    public String getEmail() {
+        return email = LazyDecryption.reveal(email);
+    }
+
+    public String getBankAccountNumber() {
+        return bankAccountNumber = LazyDecryption.reveal(bankAccountNumber);
+    }
 }
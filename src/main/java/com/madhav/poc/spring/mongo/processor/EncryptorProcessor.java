@@ -0,0 +1,473 @@
+package com.madhav.poc.spring.mongo.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Generates a {@code <Class>_Encryptor} next to every class of the compilation that has
+ * {@code @Encrypted} fields or reaches them through its field types, and lists them in
+ * {@code META-INF/services} for {@code EntityEncryptors}. The generated code makes the same
+ * decisions as {@code EncryptionMetadata}, only at compile time: fields go through their (Lombok)
+ * getters and setters, nested objects of a generated class are called directly, and containers
+ * are handed to the shared walker so parallel fan-out and projection handling stay in one place.
+ *
+ * <p>{@code lazy} fields are read through a VarHandle, because their getter would decrypt them.
+ * Classes this cannot handle (generic, abstract, private, final encrypted fields, missing
+ * accessors) get no encryptor and stay on the reflective walker; a note says why.
+ */
+@SupportedAnnotationTypes("*")
+public class EncryptorProcessor extends AbstractProcessor {
+
+    private static final String UTIL = "com.madhav.poc.spring.mongo.util";
+    private static final String ENCRYPTED = UTIL + ".Encrypted";
+    private static final String SERVICE_FILE = "META-INF/services/" + UTIL + ".EntityEncryptor";
+    private static final String SUFFIX = "_Encryptor";
+
+    private enum Kind { ENCRYPTED, NESTED, CONTAINER }
+
+    private record FieldModel(VariableElement field, Kind kind, boolean scalar,
+                              boolean lazy, boolean randomized, String hashField, TypeElement nestedType) {
+        String name() {
+            return field.getSimpleName().toString();
+        }
+    }
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private final Set<String> generated = new TreeSet<>();
+    /** Encryptor names of every class compiled here, whether or not it got one */
+    private final Set<String> compiled = new HashSet<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        elements = env.getElementUtils();
+        types = env.getTypeUtils();
+        messager = env.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        if (round.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+        if (elements.getTypeElement(ENCRYPTED) == null) return false;
+
+        // plan the whole round first, so generated classes can call each other directly
+        Map<TypeElement, List<FieldModel>> plans = new LinkedHashMap<>();
+        for (TypeElement type : ElementFilter.typesIn(round.getRootElements())) {
+            collect(type, plans);
+        }
+        plans.keySet().forEach(t -> generated.add(encryptorName(t)));
+        plans.forEach(this::write);
+        return false;
+    }
+
+    // ======== PLANNING ========
+
+    private void collect(TypeElement type, Map<TypeElement, List<FieldModel>> plans) {
+        for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collect(member, plans);
+        }
+        if (type.getKind() != ElementKind.CLASS || isLeaf(type.asType())) return;
+        compiled.add(encryptorName(type));
+
+        List<FieldModel> fields = new ArrayList<>();
+        for (VariableElement f : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (f.getModifiers().contains(Modifier.STATIC)) continue;
+            FieldModel model = plan(type, f);
+            if (model != null) fields.add(model);
+        }
+        // abstract field types alone make a class "may contain"; only generate for those that surely do
+        if (fields.isEmpty() || !reachesEncrypted(type.asType(), new HashSet<>())) return;
+
+        String reason = unsupported(type, fields);
+        if (reason != null) {
+            messager.printMessage(Diagnostic.Kind.NOTE, type.getSimpleName()
+                    + " keeps the reflective encryption walker: " + reason, type);
+            return;
+        }
+        plans.put(type, fields);
+    }
+
+    private FieldModel plan(TypeElement owner, VariableElement f) {
+        TypeMirror ft = f.asType();
+        AnnotationMirror encrypted = annotation(f, ENCRYPTED);
+        if (encrypted != null) {
+            Map<String, Object> values = values(encrypted);
+            boolean scalar = isString(ft);
+            String hashField = null;
+            if (scalar && Boolean.TRUE.equals(values.get("hash"))) {
+                String name = (String) values.get("hashFieldName");
+                hashField = hashSibling(owner, name.isBlank() ? f.getSimpleName() + "_hash" : name);
+            }
+            return new FieldModel(f, Kind.ENCRYPTED, scalar, scalar && Boolean.TRUE.equals(values.get("lazy")),
+                    "RANDOMIZED".equals(String.valueOf(values.get("mode"))), hashField, null);
+        }
+        if (ft.getKind() == TypeKind.ARRAY || (isLeaf(ft) && isContainer(ft))) {
+            if (!elementMayContainEncrypted(ft, new HashSet<>())) return null;
+            return new FieldModel(f, Kind.CONTAINER, false, false, false, null, null);
+        }
+        if (!isLeaf(ft) && mayContainEncrypted(ft, new HashSet<>())) {
+            TypeElement nested = ft.getKind() == TypeKind.DECLARED ? (TypeElement) types.asElement(ft) : null;
+            return new FieldModel(f, Kind.NESTED, false, false, false, null, nested);
+        }
+        return null;
+    }
+
+    /** Why no encryptor can be generated for {@code type}, or null */
+    private String unsupported(TypeElement type, List<FieldModel> fields) {
+        Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT)) return "it is abstract";
+        if (modifiers.contains(Modifier.PRIVATE)) return "it is private";
+        if (!type.getTypeParameters().isEmpty()) return "it is generic";
+        if (type.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC)) return "it is an inner class";
+        for (FieldModel f : fields) {
+            if (!f.lazy() && !hasAccessor(type, f.field(), true)) return "no getter for " + f.name();
+            if (f.kind() == Kind.ENCRYPTED && f.scalar()) {
+                if (f.field().getModifiers().contains(Modifier.FINAL)) return f.name() + " is final";
+                if (!hasAccessor(type, f.field(), false)) return "no setter for " + f.name();
+            }
+            if (f.hashField() != null) {
+                VariableElement hash = field(type, f.hashField());
+                if (!hasAccessor(type, hash, true) || !hasAccessor(type, hash, false)) {
+                    return "no getter and setter for " + f.hashField();
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Same rules as EncryptionMetadata: abstract types are assumed to possibly hold PII */
+    private boolean mayContainEncrypted(TypeMirror type, Set<String> visiting) {
+        return contains(type, visiting, true);
+    }
+
+    private boolean elementMayContainEncrypted(TypeMirror container, Set<String> visiting) {
+        return elementContains(container, visiting, true);
+    }
+
+    /** Declares or reaches an {@code @Encrypted} field through concrete field types only */
+    private boolean reachesEncrypted(TypeMirror type, Set<String> visiting) {
+        return contains(type, visiting, false);
+    }
+
+    private boolean contains(TypeMirror type, Set<String> visiting, boolean assumeUnknown) {
+        if (isLeaf(type)) return false;
+        if (type.getKind() == TypeKind.ARRAY) return contains(((ArrayType) type).getComponentType(), visiting, assumeUnknown);
+        if (type.getKind() != TypeKind.DECLARED) return assumeUnknown; // type variable: unknown until runtime
+        TypeElement element = (TypeElement) types.asElement(type);
+        if (element.getKind().isInterface() || element.getModifiers().contains(Modifier.ABSTRACT)) return assumeUnknown;
+        if (!visiting.add(element.getQualifiedName().toString())) return false; // cycle: decided by the other fields on the path
+
+        for (VariableElement f : ElementFilter.fieldsIn(element.getEnclosedElements())) {
+            if (f.getModifiers().contains(Modifier.STATIC)) continue;
+            if (annotation(f, ENCRYPTED) != null) return true;
+            TypeMirror ft = f.asType();
+            if (!isLeaf(ft)) {
+                if (contains(ft, visiting, assumeUnknown)) return true;
+            } else if (isContainer(ft) && elementContains(ft, visiting, assumeUnknown)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean elementContains(TypeMirror container, Set<String> visiting, boolean assumeUnknown) {
+        TypeMirror element = elementType(container);
+        if (element == null || isObject(element)) return assumeUnknown;
+        if (isLeaf(element)) return assumeUnknown && isContainer(element);
+        return contains(element, visiting, assumeUnknown);
+    }
+
+    /** Element type of an Iterable/Map/array declaration, or null if it cannot be resolved statically */
+    private TypeMirror elementType(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) return bound(((ArrayType) type).getComponentType());
+        if (type.getKind() != TypeKind.DECLARED) return null;
+        List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+        if (isAssignable(type, "java.util.Map") && args.size() == 2) return bound(args.get(1));
+        if (isAssignable(type, "java.lang.Iterable") && args.size() == 1) return bound(args.get(0));
+        return null;
+    }
+
+    private TypeMirror bound(TypeMirror type) {
+        if (type instanceof WildcardType w) return w.getExtendsBound() == null ? null : bound(w.getExtendsBound());
+        if (type instanceof TypeVariable v) return bound(v.getUpperBound());
+        return type;
+    }
+
+    /** JDK and BSON types, primitives and enums: never descended into */
+    private boolean isLeaf(TypeMirror type) {
+        if (type.getKind().isPrimitive()) return true;
+        if (type.getKind() != TypeKind.DECLARED) return false;
+        TypeElement element = (TypeElement) types.asElement(type);
+        if (element.getKind() == ElementKind.ENUM) return true;
+        String name = element.getQualifiedName().toString();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("org.bson.");
+    }
+
+    private boolean isContainer(TypeMirror type) {
+        return type.getKind() == TypeKind.ARRAY || isObject(type)
+                || isAssignable(type, "java.lang.Iterable") || isAssignable(type, "java.util.Map");
+    }
+
+    private boolean isAssignable(TypeMirror type, String name) {
+        TypeElement target = elements.getTypeElement(name);
+        return target != null && types.isAssignable(types.erasure(type), types.erasure(target.asType()));
+    }
+
+    private boolean isObject(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) types.asElement(type)).getQualifiedName().contentEquals("java.lang.Object");
+    }
+
+    private boolean isString(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) types.asElement(type)).getQualifiedName().contentEquals("java.lang.String");
+    }
+
+    /** Writable String field of {@code owner} named {@code name}, like EncryptionMetadata.hashSibling */
+    private String hashSibling(TypeElement owner, String name) {
+        VariableElement f = field(owner, name);
+        if (f == null || !isString(f.asType())) return null;
+        Set<Modifier> modifiers = f.getModifiers();
+        return modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL) ? null : name;
+    }
+
+    private static VariableElement field(TypeElement owner, String name) {
+        return ElementFilter.fieldsIn(owner.getEnclosedElements()).stream()
+                .filter(f -> f.getSimpleName().contentEquals(name)).findFirst().orElse(null);
+    }
+
+    /**
+     * A declared non-private accessor, or one Lombok will add: {@code @Data}, or {@code @Getter} /
+     * {@code @Setter} on the class or the field. Lombok may run before or after this processor.
+     */
+    private boolean hasAccessor(TypeElement type, VariableElement f, boolean getter) {
+        String name = accessor(f.getSimpleName().toString(), getter);
+        for (ExecutableElement m : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (m.getSimpleName().contentEquals(name) && m.getParameters().size() == (getter ? 0 : 1)) {
+                return !m.getModifiers().contains(Modifier.PRIVATE);
+            }
+        }
+        String lombok = getter ? "lombok.Getter" : "lombok.Setter";
+        return annotation(type, "lombok.Data") != null || annotation(type, lombok) != null || annotation(f, lombok) != null;
+    }
+
+    private static String accessor(String field, boolean getter) {
+        return (getter ? "get" : "set") + Character.toUpperCase(field.charAt(0)) + field.substring(1);
+    }
+
+    private static AnnotationMirror annotation(Element element, String name) {
+        for (AnnotationMirror a : element.getAnnotationMirrors()) {
+            if (((TypeElement) a.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) return a;
+        }
+        return null;
+    }
+
+    private Map<String, Object> values(AnnotationMirror annotation) {
+        Map<String, Object> out = new HashMap<>();
+        elements.getElementValuesWithDefaults(annotation).forEach((k, v) ->
+                out.put(k.getSimpleName().toString(), v.getValue() instanceof VariableElement e ? e.getSimpleName().toString() : v.getValue()));
+        return out;
+    }
+
+    // ======== GENERATION ========
+
+    private String encryptorName(TypeElement type) {
+        String pkg = elements.getPackageOf(type).getQualifiedName().toString();
+        String binary = elements.getBinaryName(type).toString();
+        String simple = (pkg.isEmpty() ? binary : binary.substring(pkg.length() + 1)).replace('$', '_');
+        return (pkg.isEmpty() ? "" : pkg + ".") + simple + SUFFIX;
+    }
+
+    private void write(TypeElement type, List<FieldModel> fields) {
+        String qualified = encryptorName(type);
+        int dot = qualified.lastIndexOf('.');
+        String pkg = dot < 0 ? "" : qualified.substring(0, dot);
+        String simple = qualified.substring(dot + 1);
+        String entity = type.getQualifiedName().toString();
+
+        StringBuilder out = new StringBuilder();
+        if (!pkg.isEmpty()) out.append("package ").append(pkg).append(";\n\n");
+        out.append("import ").append(UTIL).append(".EncryptedField;\n")
+                .append("import ").append(UTIL).append(".EncryptionMetadata;\n")
+                .append("import ").append(UTIL).append(".EncryptionReflectionUtils;\n")
+                .append("import ").append(UTIL).append(".EncryptionReflectionUtils.Pass;\n")
+                .append("import ").append(UTIL).append(".EncryptionUtil;\n")
+                .append("import ").append(UTIL).append(".EntityEncryptor;\n")
+                .append("import ").append(UTIL).append(".EntityEncryptors;\n")
+                .append("import org.bson.Document;\n\n")
+                .append("import javax.annotation.processing.Generated;\n")
+                .append("import java.lang.invoke.MethodHandles;\n")
+                .append("import java.lang.invoke.VarHandle;\n\n")
+                .append("/** Encryptor of {@link ").append(entity).append("}, generated from its {@code @Encrypted} fields */\n")
+                .append("@Generated(\"").append(EncryptorProcessor.class.getName()).append("\")\n")
+                .append("public final class ").append(simple).append(" implements EntityEncryptor<").append(entity).append("> {\n\n");
+
+        for (FieldModel f : fields) {
+            // resolved through the mapping context at runtime, which knows the field naming strategy
+            out.append("    private static final EncryptionMetadata.DocumentKey ").append(constant("KEY", f))
+                    .append(" = EncryptionMetadata.documentKey(").append(entity).append(".class, \"").append(f.name()).append("\");\n");
+            if (f.kind() != Kind.ENCRYPTED) continue;
+            out.append("    private static final EncryptedField ").append(constant("FIELD", f)).append(" = EncryptedField.of(")
+                    .append(entity).append(".class, \"").append(f.name()).append("\", ")
+                    .append(f.randomized()).append(", ").append(f.lazy()).append(");\n");
+            if (f.lazy()) {
+                out.append("    // the getter would decrypt it\n")
+                        .append("    private static final VarHandle ").append(constant("RAW", f))
+                        .append(" = EntityEncryptors.rawField(MethodHandles.lookup(), ").append(entity)
+                        .append(".class, \"").append(f.name()).append("\", String.class);\n");
+            }
+        }
+        out.append("\n    @Override\n")
+                .append("    public Class<").append(entity).append("> type() {\n")
+                .append("        return ").append(entity).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public void process(").append(entity).append(" entity, Document fetched, EncryptionUtil util, Pass pass) {\n")
+                .append("        processFields(entity, fetched, util, pass);\n")
+                .append("    }\n\n")
+                .append("    public static void processFields(").append(entity).append(" entity, Document fetched, EncryptionUtil util, Pass pass) {\n");
+
+        for (FieldModel f : fields) {
+            out.append("        { // ").append(f.name()).append('\n')
+                    .append("            Object stored = fetched == null ? null : fetched.get(").append(constant("KEY", f)).append(".get());\n")
+                    .append("            if (fetched == null || stored != null) {\n");
+            switch (f.kind()) {
+                case ENCRYPTED -> writeEncrypted(out, f);
+                case NESTED -> writeNested(out, f);
+                case CONTAINER -> out.append("                var value = entity.").append(accessor(f.name(), true)).append("();\n")
+                        .append("                if (value != null) EncryptionReflectionUtils.processElements(value, stored, util, pass);\n");
+            }
+            if (f.kind() == Kind.ENCRYPTED && f.scalar()) {
+                out.append("            } else {\n")
+                        .append("                EncryptionReflectionUtils.checkNotProjected(").append(rawRead(f)).append(", ")
+                        .append(constant("KEY", f)).append(".get(), util);\n");
+            }
+            out.append("            }\n")
+                    .append("        }\n");
+        }
+        out.append("    }\n}\n");
+
+        try {
+            FileObject source = processingEnv.getFiler().createSourceFile(qualified, type);
+            try (Writer w = source.openWriter()) {
+                w.write(out.toString());
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Cannot write " + qualified + ": " + e.getMessage(), type);
+        }
+    }
+
+    private void writeEncrypted(StringBuilder out, FieldModel f) {
+        String field = constant("FIELD", f);
+        String set = accessor(f.name(), false);
+        if (!f.scalar()) {
+            out.append("                var value = entity.").append(accessor(f.name(), true)).append("();\n")
+                    .append("                if (value != null) EncryptionReflectionUtils.processValues(value, ")
+                    .append(field).append(", util, pass);\n");
+            return;
+        }
+        String read = rawRead(f);
+        out.append("                String value = ").append(read).append(";\n")
+                .append("                if (value != null) {\n")
+                .append("                    if (pass == Pass.ENCRYPT) {\n");
+        if (f.hashField() != null) {
+            out.append("                        String hash = entity.").append(accessor(f.hashField(), true)).append("();\n")
+                    .append("                        String computed = EncryptionReflectionUtils.hashField(value, hash, ").append(field).append(", util);\n")
+                    .append("                        if (computed != hash) entity.").append(accessor(f.hashField(), false)).append("(computed);\n");
+        }
+        out.append("                        String encrypted = EncryptionReflectionUtils.encryptField(value, ").append(field).append(", util);\n")
+                .append("                        if (encrypted != value) entity.").append(set).append("(encrypted);\n")
+                .append("                    } else {\n")
+                .append("                        String decrypted = EncryptionReflectionUtils.decryptField(value, ").append(field).append(", util, pass);\n")
+                .append("                        if (decrypted != value) entity.").append(set).append("(decrypted);\n")
+                .append("                    }\n")
+                .append("                }\n");
+    }
+
+    private void writeNested(StringBuilder out, FieldModel f) {
+        out.append("                var value = entity.").append(accessor(f.name(), true)).append("();\n");
+        TypeElement nested = f.nestedType();
+        if (nested != null && generated.contains(encryptorName(nested))) {
+            // exact class only: a subclass may declare more encrypted fields
+            out.append("                if (value != null && value.getClass() == ").append(nested.getQualifiedName()).append(".class) {\n")
+                    .append("                    ").append(encryptorName(nested)).append(".processFields(value, stored instanceof Document d ? d : null, util, pass);\n")
+                    .append("                } else if (value != null) {\n")
+                    .append("                    EncryptionReflectionUtils.processNested(value, stored, util, pass);\n")
+                    .append("                }\n");
+        } else {
+            out.append("                if (value != null) EncryptionReflectionUtils.processNested(value, stored, util, pass);\n");
+        }
+    }
+
+    /** Reads a scalar field without decrypting it */
+    private static String rawRead(FieldModel f) {
+        return f.lazy() ? "(String) " + constant("RAW", f) + ".get(entity)" : "entity." + accessor(f.name(), true) + "()";
+    }
+
+    private static String constant(String prefix, FieldModel f) {
+        return prefix + "_" + f.name().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Merges this compilation's encryptors into the service file, so an incremental compile of a
+     * few files keeps the others. A previous entry is kept only if its class was not compiled
+     * here and it still resolves to an encryptor of an existing class.
+     */
+    private void writeServiceFile() {
+        Set<String> names = new TreeSet<>(generated);
+        boolean existed = false;
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                r.lines().map(String::trim).filter(l -> !l.isEmpty() && !l.startsWith("#"))
+                        .filter(l -> !compiled.contains(l) && isEncryptor(l))
+                        .forEach(names::add);
+            }
+            existed = true;
+        } catch (IOException e) {
+            // first build: nothing to merge
+        }
+        if (names.isEmpty() && !existed) return;
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer w = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String name : names) w.write(name + "\n");
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Cannot write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    /** True if {@code name} is a class implementing {@code EntityEncryptor} of a class that still exists */
+    private boolean isEncryptor(String name) {
+        TypeElement type = elements.getTypeElement(name);
+        if (type == null) return false;
+        for (TypeMirror i : type.getInterfaces()) {
+            if (i instanceof DeclaredType d && ((TypeElement) d.asElement()).getQualifiedName().contentEquals(UTIL + ".EntityEncryptor")) {
+                return d.getTypeArguments().size() == 1 && d.getTypeArguments().get(0).getKind() == TypeKind.DECLARED;
+            }
+        }
+        return false;
+    }
+}
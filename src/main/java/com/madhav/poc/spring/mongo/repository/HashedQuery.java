@@ -0,0 +1,268 @@
+package com.madhav.poc.spring.mongo.repository;
+
+import org.bson.Document;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A repository query method rewritten to match hash columns instead of {@code @Encrypted}
+ * plaintext paths. The filter is compiled once into a Document whose parameter slots are bound
+ * per call; values bound to a hash column are hashed first (each element for {@code In}). Hash
+ * columns are always matched with {@code $in}, since one value may be stored in more than one
+ * format while {@code encryption.hash.legacy-reads} is on.
+ */
+final class HashedQuery {
+
+    enum Kind { FIND, COUNT, EXISTS }
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("(['\"]?)\\?(\\d+)\\1");
+    private static final String PARAM_KEY = "#param";
+
+    /** Parameter slot in the compiled filter */
+    private record Param(int index) {}
+
+    /** Hashed argument bound to a slot: every stored form of every value it holds */
+    private record Forms(List<Object> values) {}
+
+    private final Document filter;
+    private final boolean[] hashed;
+    private final Kind kind;
+    private final Sort sort;
+    private final int limit;
+    private final Document fields;
+
+    private HashedQuery(Document filter, boolean[] hashed, Kind kind, Sort sort, int limit, Document fields) {
+        this.filter = filter;
+        this.hashed = hashed;
+        this.kind = kind;
+        this.sort = sort;
+        this.limit = limit;
+        this.fields = fields;
+    }
+
+    /**
+     * The rewritten query of {@code method}, or null if it needs none: a derived query touching
+     * no hashed path, or a {@code @Query} without {@link PlaintextQuery}.
+     *
+     * @param hashPaths hash column of every {@code @Encrypted(hash = true)} path of the domain type
+     * @throws IllegalStateException if the method needs rewriting but uses something this cannot express
+     */
+    static HashedQuery compile(Method method, Class<?> domainType, Map<String, String> hashPaths,
+                               MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext) {
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        if (query != null && !query.value().isBlank()) {
+            return method.isAnnotationPresent(PlaintextQuery.class) ? fromAnnotation(method, query, hashPaths) : null;
+        }
+        PartTree tree;
+        try {
+            tree = new PartTree(method.getName(), domainType);
+        } catch (RuntimeException e) {
+            return null; // not a derived query; Spring Data reports it
+        }
+        return fromPartTree(method, tree, hashPaths, mappingContext);
+    }
+
+    private static HashedQuery fromPartTree(Method method, PartTree tree, Map<String, String> hashPaths,
+                                            MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext) {
+        boolean[] hashed = new boolean[method.getParameterCount()];
+        List<Document> ors = new ArrayList<>();
+        int argument = 0;
+        boolean rewritten = false;
+        String otherCriterion = null;
+        for (PartTree.OrPart or : tree) {
+            Document and = new Document();
+            for (Part part : or) {
+                String path = mappingContext.getPersistentPropertyPath(part.getProperty())
+                        .toDotPath(MongoPersistentProperty::getFieldName);
+                String hashPath = hashPaths.get(path);
+                String field = hashPath != null ? hashPath : path;
+                if (and.containsKey(field)) throw unsupported(method, "filters on " + field + " twice");
+                if (part.shouldIgnoreCase() != Part.IgnoreCaseType.NEVER) {
+                    // the hash is of the exact value; other paths would lose IgnoreCase in the rewrite
+                    if (hashPath != null) throw unsupported(method, "ignores case on " + path + ", but its hash matches the exact value");
+                    otherCriterion = "IgnoreCase on " + path;
+                }
+                if (argument >= hashed.length) throw unsupported(method, "has fewer parameters than criteria");
+                Param param = new Param(argument);
+                switch (part.getType()) {
+                    case SIMPLE_PROPERTY -> and.put(field, hashPath != null ? new Document("$in", param) : param);
+                    case IN -> and.put(field, new Document("$in", param));
+                    default -> {
+                        if (hashPath != null) throw unsupported(method, "can only match " + path + " by equality or In");
+                        otherCriterion = part.getType() + " on " + path; // only fails if the method needs rewriting
+                    }
+                }
+                hashed[argument] = hashPath != null;
+                rewritten |= hashPath != null;
+                argument += part.getNumberOfArguments();
+            }
+            ors.add(and);
+        }
+        if (!rewritten) return null;
+        if (otherCriterion != null) throw unsupported(method, "combines a hashed path with " + otherCriterion);
+        if (argument != hashed.length) throw unsupported(method, "takes Sort, Pageable or other extra parameters");
+        if (tree.isDelete()) throw unsupported(method, "is a delete query");
+
+        Kind kind = tree.isCountProjection() ? Kind.COUNT : tree.isExistsProjection() ? Kind.EXISTS : Kind.FIND;
+        Document filter = ors.size() == 1 ? ors.get(0) : new Document("$or", ors);
+        int limit = tree.isLimiting() ? tree.getMaxResults() : 0;
+        return new HashedQuery(filter, hashed, kind, tree.getSort(), limit, null);
+    }
+
+    private static HashedQuery fromAnnotation(Method method, Query query, Map<String, String> hashPaths) {
+        if (query.value().contains("#{")) throw unsupported(method, "uses SpEL");
+        if (query.delete()) throw unsupported(method, "is a delete query");
+        Matcher m = PLACEHOLDER.matcher(query.value());
+        Document filter = Document.parse(m.replaceAll("{ \"" + PARAM_KEY + "\": $2 }"));
+        boolean[] hashed = new boolean[method.getParameterCount()];
+        Document compiled = (Document) compileSlots(filter);
+        if (!rewriteKeys(compiled, hashPaths, hashed)) {
+            throw unsupported(method, "is @PlaintextQuery but filters on no @Encrypted(hash = true) path");
+        }
+        Kind kind = query.count() ? Kind.COUNT : query.exists() ? Kind.EXISTS : Kind.FIND;
+        Document fields = query.fields().isBlank() ? null : Document.parse(query.fields());
+        Sort sort = Sort.unsorted();
+        if (!query.sort().isBlank()) {
+            List<Sort.Order> orders = new ArrayList<>();
+            Document.parse(query.sort()).forEach((k, v) -> orders.add(((Number) v).intValue() < 0 ? Sort.Order.desc(k) : Sort.Order.asc(k)));
+            sort = Sort.by(orders);
+        }
+        return new HashedQuery(compiled, hashed, kind, sort, 0, fields);
+    }
+
+    /** Replaces {@code { "#param": n }} documents with parameter slots */
+    private static Object compileSlots(Object value) {
+        if (value instanceof Document d) {
+            if (d.size() == 1 && d.get(PARAM_KEY) instanceof Number n) return new Param(n.intValue());
+            Document out = new Document();
+            d.forEach((k, v) -> out.put(k, compileSlots(v)));
+            return out;
+        }
+        if (value instanceof List<?> list) return list.stream().map(HashedQuery::compileSlots).toList();
+        return value;
+    }
+
+    /**
+     * Renames hashed paths of {@code filter} (and of its $and / $or / $nor clauses) to their hash
+     * columns, turning equality on them into {@code $in} and {@code $ne} into {@code $nin}
+     */
+    private static boolean rewriteKeys(Document filter, Map<String, String> hashPaths, boolean[] hashed) {
+        boolean rewritten = false;
+        for (String key : List.copyOf(filter.keySet())) {
+            Object value = filter.get(key);
+            if (key.startsWith("$")) {
+                if (value instanceof List<?> clauses) {
+                    for (Object clause : clauses) {
+                        if (clause instanceof Document d) rewritten |= rewriteKeys(d, hashPaths, hashed);
+                    }
+                }
+                continue;
+            }
+            String hashPath = hashPaths.get(key);
+            if (hashPath == null) continue;
+            filter.remove(key);
+            filter.put(hashPath, matchAnyForm(value));
+            markHashed(value, hashed);
+            rewritten = true;
+        }
+        return rewritten;
+    }
+
+    private static Object matchAnyForm(Object value) {
+        if (value instanceof Param) return new Document("$in", value);
+        if (value instanceof Document d) {
+            Document out = new Document();
+            d.forEach((op, v) -> {
+                if (v instanceof Param && op.equals("$eq")) out.put("$in", v);
+                else if (v instanceof Param && op.equals("$ne")) out.put("$nin", v);
+                else out.put(op, v);
+            });
+            return out;
+        }
+        return value;
+    }
+
+    private static void markHashed(Object value, boolean[] hashed) {
+        if (value instanceof Param p) {
+            if (p.index() < hashed.length) hashed[p.index()] = true;
+        } else if (value instanceof Document d) {
+            d.values().forEach(v -> markHashed(v, hashed));
+        } else if (value instanceof List<?> list) {
+            list.forEach(v -> markHashed(v, hashed));
+        }
+    }
+
+    private static IllegalStateException unsupported(Method method, String reason) {
+        return new IllegalStateException("Cannot rewrite " + method.getDeclaringClass().getSimpleName() + "."
+                + method.getName() + " to match hash columns: it " + reason);
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    /** The query for one call; each hashed argument is hashed once, whatever the number of slots bound to it */
+    BasicQuery bind(Object[] args, Function<String, List<Object>> hashFn) {
+        Object[] values = args.clone();
+        for (int i = 0; i < values.length; i++) {
+            if (hashed[i]) {
+                List<Object> forms = new ArrayList<>();
+                hashValue(values[i], hashFn, forms);
+                values[i] = new Forms(forms);
+            }
+        }
+        BasicQuery query = fields == null ? new BasicQuery((Document) bindSlots(filter, values))
+                : new BasicQuery((Document) bindSlots(filter, values), fields);
+        query.with(sort);
+        if (limit > 0) query.limit(limit);
+        return query;
+    }
+
+    /** Adds the stored forms of {@code value}, or of each of its elements, to {@code out} */
+    private static void hashValue(Object value, Function<String, List<Object>> hashFn, List<Object> out) {
+        if (value == null) {
+            out.add(null);
+        } else if (value instanceof String s) {
+            out.addAll(hashFn.apply(s));
+        } else if (value instanceof Iterable<?> it) {
+            it.forEach(v -> hashValue(v, hashFn, out));
+        } else if (value.getClass().isArray()) {
+            for (int i = 0; i < Array.getLength(value); i++) hashValue(Array.get(value, i), hashFn, out);
+        } else {
+            out.addAll(hashFn.apply(value.toString()));
+        }
+    }
+
+    private static Object bindSlots(Object value, Object[] args) {
+        if (value instanceof Param p) return args[p.index()] instanceof Forms f ? f.values() : args[p.index()];
+        if (value instanceof Document d) {
+            Document out = new Document();
+            d.forEach((k, v) -> out.put(k, bindSlots(v, args)));
+            return out;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> out = new ArrayList<>(list.size());
+            for (Object v : list) {
+                // a hashed slot inside an array, e.g. { $in: [?0, ?1] }, contributes all its forms
+                if (v instanceof Param p && args[p.index()] instanceof Forms f) out.addAll(f.values());
+                else out.add(bindSlots(v, args));
+            }
+            return out;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,101 @@
+package com.madhav.poc.spring.mongo.repository;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Runs the {@link HashedQuery} of a repository method through the template instead of Spring
+ * Data's own query, so entity callbacks (decryption) still apply to the results. Every other
+ * method proceeds unchanged.
+ */
+final class HashedQueryInterceptor implements MethodInterceptor {
+
+    private final Map<Method, HashedQuery> queries;
+    private final Class<?> domainType;
+    private final String collection;
+    private final MongoOperations operations;
+    private final ReactiveMongoOperations reactiveOperations;
+    private final Function<String, List<Object>> hashFn;
+
+    HashedQueryInterceptor(Map<Method, HashedQuery> queries, Class<?> domainType, String collection,
+                           MongoOperations operations, ReactiveMongoOperations reactiveOperations,
+                           Function<String, List<Object>> hashFn) {
+        this.queries = queries;
+        this.domainType = domainType;
+        this.collection = collection;
+        this.operations = operations;
+        this.reactiveOperations = reactiveOperations;
+        this.hashFn = hashFn;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        HashedQuery hashedQuery = queries.get(invocation.getMethod());
+        if (hashedQuery == null) return invocation.proceed();
+        Class<?> returnType = invocation.getMethod().getReturnType();
+        if (reactiveOperations != null) {
+            // hash on subscription, like any other reactive repository query
+            Mono<BasicQuery> query = Mono.fromCallable(() -> hashedQuery.bind(invocation.getArguments(), hashFn));
+            return switch (hashedQuery.kind()) {
+                case COUNT -> query.flatMap(q -> reactiveOperations.count(q, domainType, collection));
+                case EXISTS -> query.flatMap(q -> reactiveOperations.exists(q, domainType, collection));
+                case FIND -> Flux.class.isAssignableFrom(returnType)
+                        ? query.flatMapMany(q -> reactiveOperations.find(q, domainType, collection))
+                        : query.flatMap(q -> q.getLimit() == 1 ? reactiveOperations.findOne(q, domainType, collection)
+                                : reactiveOperations.find(q.limit(2), domainType, collection).collectList()
+                                        .flatMap(found -> Mono.justOrEmpty(single(found, q))));
+            };
+        }
+        BasicQuery query = hashedQuery.bind(invocation.getArguments(), hashFn);
+        return switch (hashedQuery.kind()) {
+            case COUNT -> operations.count(query, domainType, collection);
+            case EXISTS -> operations.exists(query, domainType, collection);
+            case FIND -> {
+                if (Stream.class.isAssignableFrom(returnType)) yield operations.stream(query, domainType, collection);
+                if (Iterable.class.isAssignableFrom(returnType)) yield operations.find(query, domainType, collection);
+                Object found = query.getLimit() == 1 ? operations.findOne(query, domainType, collection)
+                        : single(operations.find(query.limit(2), domainType, collection), query);
+                yield returnType == Optional.class ? Optional.ofNullable(found) : found;
+            }
+        };
+    }
+
+    /**
+     * The only element of {@code found}, fetched with a limit of 2, or null. Like Spring Data's
+     * own single-result queries, more than one match is an error rather than an arbitrary pick;
+     * {@code First}/{@code Top} methods (limit 1) ask for one of many and use {@code findOne}.
+     */
+    private static Object single(List<?> found, BasicQuery query) {
+        if (found.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException("Query " + query + " returned non unique result", 1);
+        }
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /** Fails at startup for return types this interceptor cannot produce */
+    static void checkReturnType(Method method, boolean reactive) {
+        Class<?> type = method.getReturnType();
+        boolean supported = reactive
+                ? type == Flux.class || type == Mono.class
+                : !Slice.class.isAssignableFrom(type) && !Future.class.isAssignableFrom(type);
+        if (!supported) {
+            throw new IllegalStateException("Cannot rewrite " + method.getDeclaringClass().getSimpleName() + "."
+                    + method.getName() + " to match hash columns: it returns " + type.getSimpleName());
+        }
+    }
+}
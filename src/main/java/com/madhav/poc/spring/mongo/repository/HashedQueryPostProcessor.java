@@ -0,0 +1,73 @@
+package com.madhav.poc.spring.mongo.repository;
+
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.HashPlan;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lets repositories take plaintext for {@code @Encrypted(hash = true)} properties: every query
+ * method that filters on one (derived, or {@code @Query} with {@link PlaintextQuery}) is
+ * rewritten to a {@code $in} on its hash column, which {@code HashIndexManager} indexes. Methods
+ * are compiled when the repository is created, so one that cannot be rewritten fails startup.
+ */
+@Component
+public class HashedQueryPostProcessor implements BeanPostProcessor {
+
+    // resolved lazily: post processors are created before the beans they depend on
+    private final ObjectProvider<MongoOperations> mongoOperations;
+    private final ObjectProvider<ReactiveMongoOperations> reactiveMongoOperations;
+    private final ObjectProvider<EncryptionUtil> encryptionUtil;
+
+    public HashedQueryPostProcessor(ObjectProvider<MongoOperations> mongoOperations,
+                                    ObjectProvider<ReactiveMongoOperations> reactiveMongoOperations,
+                                    ObjectProvider<EncryptionUtil> encryptionUtil) {
+        this.mongoOperations = mongoOperations;
+        this.reactiveMongoOperations = reactiveMongoOperations;
+        this.encryptionUtil = encryptionUtil;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(this::addInterceptor));
+        }
+        return bean;
+    }
+
+    private void addInterceptor(ProxyFactory proxy, RepositoryInformation repository) {
+        boolean reactive = repository.isReactiveRepository();
+        MongoOperations operations = reactive ? null : mongoOperations.getObject();
+        ReactiveMongoOperations reactiveOperations = reactive ? reactiveMongoOperations.getObject() : null;
+        MongoConverter converter = reactive ? reactiveOperations.getConverter() : operations.getConverter();
+
+        Class<?> domainType = repository.getDomainType();
+        Map<String, String> hashPaths = new HashMap<>();
+        HashPlan.forClass(domainType).targets().forEach(t -> hashPaths.put(t.path(), t.hashPath()));
+        if (hashPaths.isEmpty()) return;
+
+        Map<Method, HashedQuery> queries = new HashMap<>();
+        for (Method method : repository.getQueryMethods()) {
+            HashedQuery query = HashedQuery.compile(method, domainType, hashPaths, converter.getMappingContext());
+            if (query == null) continue;
+            HashedQueryInterceptor.checkReturnType(method, reactive);
+            queries.put(method, query);
+        }
+        if (queries.isEmpty()) return;
+
+        String collection = converter.getMappingContext().getRequiredPersistentEntity(domainType).getCollection();
+        proxy.addAdvice(new HashedQueryInterceptor(queries, domainType, collection, operations, reactiveOperations,
+                encryptionUtil.getObject().hasher()::queryForms));
+    }
+}
@@ -1,10 +1,13 @@
 package com.madhav.poc.spring.mongo.repository;
 
 import com.madhav.poc.spring.mongo.model.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,15 +18,26 @@ public interface OrderRepository extends MongoRepository<Order, String> {
     @Query("{ 'agent.lead.user.email': ?0 }")
     List<Order> findByEncryptedEmail(String encryptedEmail);
 
-    @Query("{ 'agent.lead.user.mobile_hash': ?0 }")
+    // Matches the same email under any key version or storage form (ENC:: string or codec binary)
+    @Query("{ 'agent.lead.user.email': { $in: ?0 } }")
+    List<Order> findByEncryptedEmailIn(Collection<?> storedEmails);
+
+    @Query("{ 'agent.lead.user.mobileNumberHash': ?0 }")
     Optional<Order> findByMobileHash(String mobileHash);
 
-    @Query("{ 'agent.lead.user.email_hash': ?0 }")
+    @Query("{ 'agent.lead.user.emailHash': ?0 }")
     Optional<Order> findByEmailHash(String emailHash);
 
     // Search by email (compare against emailHash)
     Optional<Order> findByAgent_Lead_User_EmailHash(String emailHash);
 
+    // Plaintext email; rewritten to an emailHash equality by HashedQueryPostProcessor
+    Optional<Order> findByAgent_Lead_User_Email(String email);
+
+    @PlaintextQuery
+    @Query("{ 'agent.lead.user.mobileNumber': ?0 }")
+    Optional<Order> findByMobileNumber(String mobileNumber);
+
     // Search by mobile
     Optional<Order> findByAgent_Lead_User_MobileNumberHash(String mobileHash);
 
@@ -34,6 +48,10 @@ public interface OrderRepository extends MongoRepository<Order, String> {
             String name, String emailHash, String mobileHash
     );
 
+    // Dashboard rows: only orderId and the email are fetched, so only the email is decrypted
+    @Query(value = "{}", fields = "{ 'orderId': 1, 'agent.lead.user.email': 1 }")
+    Slice<Order> findDashboardRows(Pageable pageable);
+
     @Query("{ 'agent.agentCode': ?0, 'agent.lead.user.name': ?1 }")
-    List<Order> findOrdersByAgentCodeAndUserName(String agentCode, String nameHash);
+    List<Order> findOrdersByAgentCodeAndUserName(String agentCode, String userName);
 }
@@ -0,0 +1,20 @@
+package com.madhav.poc.spring.mongo.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code @Query} method whose parameters bound to {@code @Encrypted(hash = true)} paths
+ * are plaintext: the filter is rewritten to match their hash columns instead, hashing each
+ * value once per call. Derived query methods (e.g. {@code findByAgent_Lead_User_Email}) are
+ * rewritten without it. {@code @Query} methods without it are left alone, so they can still
+ * match stored ciphertext.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PlaintextQuery {
+}
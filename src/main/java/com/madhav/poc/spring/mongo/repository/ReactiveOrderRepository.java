@@ -0,0 +1,31 @@
+package com.madhav.poc.spring.mongo.repository;
+
+import com.madhav.poc.spring.mongo.model.Order;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+
+@Repository
+public interface ReactiveOrderRepository extends ReactiveMongoRepository<Order, String> {
+
+    // Matches the same email under any key version or storage form (ENC:: string or codec binary)
+    @Query("{ 'agent.lead.user.email': { $in: ?0 } }")
+    Flux<Order> findByEncryptedEmailIn(Collection<?> storedEmails);
+
+    // Search by email (compare against emailHash)
+    Mono<Order> findByAgent_Lead_User_EmailHash(String emailHash);
+
+    // Plaintext email; rewritten to an emailHash equality by HashedQueryPostProcessor
+    Mono<Order> findByAgent_Lead_User_Email(String email);
+
+    // Search by mobile
+    Mono<Order> findByAgent_Lead_User_MobileNumberHash(String mobileHash);
+
+    @Query("{ 'agent.agentCode': ?0, 'agent.lead.user.name': ?1 }")
+    Flux<Order> findOrdersByAgentCodeAndUserName(String agentCode, String userName);
+}
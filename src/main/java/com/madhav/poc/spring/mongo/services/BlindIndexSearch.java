@@ -0,0 +1,88 @@
+package com.madhav.poc.spring.mongo.services;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.util.BlindIndexer;
+import com.madhav.poc.spring.mongo.util.BlindIndexer.Match;
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata;
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata.FieldPlan;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.HashPlan;
+import com.madhav.poc.spring.mongo.util.HashPlan.BlindTarget;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Partial searches on {@code @BlindIndex} fields: the search text becomes the tokens every
+ * match must have, queried with {@code $all} on the indexed token array; the candidates found
+ * are decrypted as usual and kept only if the value really matches. No more than
+ * {@code encryption.search.max-candidates} documents are read per search.
+ */
+@Slf4j
+@Service
+public class BlindIndexSearch {
+
+    private final MongoTemplate mongoTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final int maxCandidates;
+
+    public BlindIndexSearch(MongoTemplate mongoTemplate, EncryptionUtil encryptionUtil, EncryptionProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.encryptionUtil = encryptionUtil;
+        this.maxCandidates = properties.getSearch().getMaxCandidates();
+    }
+
+    /**
+     * Entities of {@code type} whose value at {@code path} (dotted Java field names, e.g.
+     * {@code agent.lead.user.mobileNumber}) matches {@code value}. Through a List, any element may match.
+     *
+     * @throws IllegalArgumentException if the field has no blind index able to serve this search
+     */
+    public <T> List<T> find(Class<T> type, String path, Match match, String value) {
+        BlindTarget target = HashPlan.forClass(type).blindTargets().stream()
+                .filter(t -> t.fieldPath().equals(path))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No @BlindIndex on " + path + " of " + type.getSimpleName()));
+        List<String> tokens = encryptionUtil.blindIndexer().queryTokens(value, target.spec(), match);
+
+        Query query = Query.query(Criteria.where(target.indexPath()).all(tokens)).limit(maxCandidates);
+        List<T> candidates = mongoTemplate.find(query, type);
+        if (candidates.size() == maxCandidates) {
+            log.warn("{} search on {} of {} read {} candidates, the limit; matches may be missing",
+                    match, path, type.getSimpleName(), maxCandidates);
+        }
+
+        Predicate<String> matches = BlindIndexer.matcher(value, target.spec(), match);
+        String[] segments = path.split("\\.");
+        return candidates.stream().filter(c -> anyMatch(c, segments, 0, matches)).toList();
+    }
+
+    /** Walks {@code segments} from {@code node}, fanning out over Lists, arrays and Map values */
+    private boolean anyMatch(Object node, String[] segments, int depth, Predicate<String> matches) {
+        if (node == null) return false;
+        if (node instanceof Iterable<?> items) {
+            for (Object item : items) {
+                if (anyMatch(item, segments, depth, matches)) return true;
+            }
+            return false;
+        }
+        if (node instanceof Object[] items) return anyMatch(Arrays.asList(items), segments, depth, matches);
+        if (node instanceof Map<?, ?> map) return anyMatch(map.values(), segments, depth, matches);
+
+        for (FieldPlan f : EncryptionMetadata.planFor(node.getClass()).fields()) {
+            if (!f.name().equals(segments[depth])) continue;
+            Object value = f.get(node);
+            if (depth < segments.length - 1) return anyMatch(value, segments, depth + 1, matches);
+            // raw read: a lazy field may still hold its ciphertext
+            return value instanceof String s && matches.test(encryptionUtil.isEncrypted(s) ? encryptionUtil.decrypt(s) : s);
+        }
+        return false;
+    }
+}
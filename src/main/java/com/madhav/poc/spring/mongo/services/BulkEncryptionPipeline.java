@@ -0,0 +1,112 @@
+package com.madhav.poc.spring.mongo.services;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.config.ExecutionMode;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Encrypts, converts and hashes entities in chunks, in parallel, and hands each chunk of
+ * ready-to-insert Documents to a writer. The next chunk is prepared while earlier ones are
+ * written; at most {@code maxInFlight} chunks are outstanding, after which the source stream
+ * is no longer pulled until a write completes.
+ */
+@Component
+public class BulkEncryptionPipeline {
+
+    private final EncryptionUtil encryptionUtil;
+    private final MongoConverter converter;
+    private final EncryptionProperties.Bulk settings;
+    private final ExecutionMode executionMode;
+    private final boolean codec;
+    private final ForkJoinPool pool;
+
+    public BulkEncryptionPipeline(EncryptionUtil encryptionUtil, MongoConverter converter, EncryptionProperties properties,
+                                  ExecutionMode executionMode) {
+        this.encryptionUtil = encryptionUtil;
+        this.converter = converter;
+        this.settings = properties.getBulk();
+        this.executionMode = executionMode;
+        this.codec = properties.getMode() == EncryptionProperties.Mode.CODEC;
+        this.pool = new ForkJoinPool(settings.getParallelism());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /** Returns the number of documents handed to {@code writer}. */
+    public long insertAll(Stream<?> entities, Consumer<List<Document>> writer) {
+        Semaphore inFlight = new Semaphore(settings.getMaxInFlight());
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long count = 0;
+
+        try (ExecutorService writes = executionMode.ioExecutor("bulk-write", settings.getMaxInFlight());
+             entities) {
+            Iterator<?> it = entities.iterator();
+            while (it.hasNext() && failure.get() == null) {
+                List<Object> chunk = new ArrayList<>(settings.getChunkSize());
+                while (it.hasNext() && chunk.size() < settings.getChunkSize()) chunk.add(it.next());
+
+                List<Document> documents = prepare(chunk);
+                count += documents.size();
+
+                inFlight.acquireUninterruptibly();
+                writes.execute(() -> {
+                    try {
+                        writer.accept(documents);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new RuntimeException("Bulk insert failed", failure.get());
+        }
+        return count;
+    }
+
+    /** Encrypts, converts and hashes one chunk in parallel, keeping the input order. */
+    List<Document> prepare(List<Object> chunk) {
+        try {
+            return pool.submit(() -> chunk.parallelStream().map(this::toDocument).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while encrypting chunk", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while encrypting chunk", e.getCause());
+        }
+    }
+
+    private Document toDocument(Object entity) {
+        if (codec) {
+            // the converter encrypts; the entity keeps its plaintext
+            Document document = new Document();
+            converter.write(entity, document);
+            EncryptionReflectionUtils.applyHashesFromEntity(entity, document, encryptionUtil);
+            return document;
+        }
+        EncryptionReflectionUtils.processEntity(entity, encryptionUtil, true);
+        Document document = new Document();
+        converter.write(entity, document);
+        EncryptionReflectionUtils.applyHashes(entity, document, encryptionUtil);
+        return document;
+    }
+}
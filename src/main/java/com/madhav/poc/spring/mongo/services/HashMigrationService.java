@@ -0,0 +1,96 @@
+package com.madhav.poc.spring.mongo.services;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.config.ExecutionMode;
+import com.madhav.poc.spring.mongo.migration.CollectionMigrationJob;
+import com.madhav.poc.spring.mongo.migration.HashFormatRewriter;
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.HashPlan;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rewrites the hash columns of the order collection to the configured {@code encryption.hash}
+ * format in the background, with the throttling and checkpoints of key rotation. One job per
+ * format; starting it again after a restart resumes from its checkpoints. Lookups keep matching
+ * documents not rewritten yet as long as {@code encryption.hash.legacy-reads} is on.
+ */
+@Slf4j
+@Service
+public class HashMigrationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final EncryptionProperties properties;
+    private final ExecutionMode executionMode;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor();
+    // a lock rather than synchronized: callers may be virtual threads and must not pin their carrier
+    private final ReentrantLock startLock = new ReentrantLock();
+
+    private volatile Future<?> running;
+    private volatile String lastError;
+
+    public HashMigrationService(MongoTemplate mongoTemplate, EncryptionUtil encryptionUtil, EncryptionProperties properties,
+                                ExecutionMode executionMode) {
+        this.mongoTemplate = mongoTemplate;
+        this.encryptionUtil = encryptionUtil;
+        this.properties = properties;
+        this.executionMode = executionMode;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+    }
+
+    /** Starts or resumes the migration to the configured format; does nothing if it is already running. */
+    public Status start() {
+        startLock.lock();
+        try {
+            if (running == null || running.isDone()) {
+                CollectionMigrationJob job = job();
+                lastError = null;
+                running = runner.submit(() -> {
+                    try {
+                        job.run();
+                        log.info("Hash migration {} finished", job.jobName());
+                    } catch (RuntimeException e) {
+                        lastError = e.getMessage();
+                        log.error("Hash migration {} failed; start it again to resume", job.jobName(), e);
+                    }
+                });
+            }
+        } finally {
+            startLock.unlock();
+        }
+        return status();
+    }
+
+    public Status status() {
+        CollectionMigrationJob job = job();
+        Future<?> current = running;
+        boolean active = current != null && !current.isDone();
+        return new Status(job.jobName(), encryptionUtil.hasher().describe(), active, lastError, job.checkpoints());
+    }
+
+    private CollectionMigrationJob job() {
+        return new CollectionMigrationJob(mongoTemplate,
+                mongoTemplate.getCollectionName(Order.class),
+                "hash-format-" + encryptionUtil.hasher().describe(),
+                new HashFormatRewriter(encryptionUtil, HashPlan.forClass(Order.class).targets()),
+                properties.getRotation(),
+                executionMode);
+    }
+
+    public record Status(String job, String format, boolean running, String lastError,
+                         List<CollectionMigrationJob.Checkpoint> partitions) {}
+}
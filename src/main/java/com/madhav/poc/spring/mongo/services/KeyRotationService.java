@@ -0,0 +1,94 @@
+package com.madhav.poc.spring.mongo.services;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.config.ExecutionMode;
+import com.madhav.poc.spring.mongo.migration.CollectionMigrationJob;
+import com.madhav.poc.spring.mongo.migration.KeyRotationRewriter;
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Re-encrypts the order collection with the active key in the background. One job per active
+ * key version; starting it again after a restart resumes from its checkpoints. Reads keep
+ * working meanwhile because every configured key version can still be decrypted.
+ */
+@Slf4j
+@Service
+public class KeyRotationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final EncryptionProperties properties;
+    private final ExecutionMode executionMode;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor();
+    // a lock rather than synchronized: callers may be virtual threads and must not pin their carrier
+    private final ReentrantLock startLock = new ReentrantLock();
+
+    private volatile Future<?> running;
+    private volatile String lastError;
+
+    public KeyRotationService(MongoTemplate mongoTemplate, EncryptionUtil encryptionUtil, EncryptionProperties properties,
+                              ExecutionMode executionMode) {
+        this.mongoTemplate = mongoTemplate;
+        this.encryptionUtil = encryptionUtil;
+        this.properties = properties;
+        this.executionMode = executionMode;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+    }
+
+    /** Starts or resumes the rotation to the active key; does nothing if it is already running. */
+    public Status start() {
+        startLock.lock();
+        try {
+            if (running == null || running.isDone()) {
+                CollectionMigrationJob job = job();
+                lastError = null;
+                running = runner.submit(() -> {
+                    try {
+                        job.run();
+                        log.info("Key rotation {} finished", job.jobName());
+                    } catch (RuntimeException e) {
+                        lastError = e.getMessage();
+                        log.error("Key rotation {} failed; start it again to resume", job.jobName(), e);
+                    }
+                });
+            }
+        } finally {
+            startLock.unlock();
+        }
+        return status();
+    }
+
+    public Status status() {
+        CollectionMigrationJob job = job();
+        Future<?> current = running;
+        boolean active = current != null && !current.isDone();
+        return new Status(job.jobName(), encryptionUtil.activeVersion(), active, lastError, job.checkpoints());
+    }
+
+    private CollectionMigrationJob job() {
+        return new CollectionMigrationJob(mongoTemplate,
+                mongoTemplate.getCollectionName(Order.class),
+                "key-rotation-v" + encryptionUtil.activeVersion(),
+                new KeyRotationRewriter(encryptionUtil),
+                properties.getRotation(),
+                executionMode);
+    }
+
+    public record Status(String job, int activeVersion, boolean running, String lastError,
+                         List<CollectionMigrationJob.Checkpoint> partitions) {}
+}
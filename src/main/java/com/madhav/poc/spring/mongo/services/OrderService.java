@@ -2,43 +2,106 @@ package com.madhav.poc.spring.mongo.services;
 
 
 import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.model.OrderSummary;
 import com.madhav.poc.spring.mongo.repository.OrderRepository;
-import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.BlindIndexer.Match;
+import com.madhav.poc.spring.mongo.util.MaskingUtil;
+import com.madhav.poc.spring.mongo.util.QueryValueCache;
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
     private final OrderRepository repo;
-    private final EncryptionUtil encryptionUtil;
-
+    private final QueryValueCache queryValueCache;
+    private final MongoTemplate mongoTemplate;
+    private final BulkEncryptionPipeline bulkPipeline;
+    private final PartialUpdateService partialUpdates;
+    private final StreamingDecryptionPipeline decryptionPipeline;
+    private final BlindIndexSearch blindIndexSearch;
 
     public Order save(Order order) {
         return repo.save(order); // Will encrypt automatically
     }
 
+    /** Bulk ingest: encrypts and hashes in parallel chunks, then unordered bulk inserts. Returns the count inserted. */
+    public long saveAll(Stream<Order> orders) {
+        String collection = mongoTemplate.getCollectionName(Order.class);
+        return bulkPipeline.insertAll(orders, documents ->
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection)
+                        .insert(documents)
+                        .execute());
+    }
+
+    /**
+     * Every order, decrypted, passed to {@code sink} in natural order from a cursor. Raw Documents
+     * are read so that decryption runs in the pipeline's pool rather than on the cursor thread.
+     * Returns the count.
+     */
+    public long exportAll(Consumer<? super Order> sink) {
+        Query query = new Query().cursorBatchSize(decryptionPipeline.batchSize());
+        String collection = mongoTemplate.getCollectionName(Order.class);
+        return decryptionPipeline.decryptAll(mongoTemplate.stream(query, Document.class, collection), Order.class, sink);
+    }
+
     public Optional<Order> getById(String id) {
         return repo.findById(id); // Will decrypt automatically
     }
 
     public List<Order> getByEmail(String email) {
-        String encrypted = encryptionUtil.encrypt(email);
-        return repo.findByEncryptedEmail(encrypted);
+        // documents not yet rotated still hold the old ciphertext
+        return repo.findByEncryptedEmailIn(queryValueCache.storedForms(email));
     }
 
     public Optional<Order> findByAgentLeadUserEmailHash(String emailHash) {
         return repo.findByAgent_Lead_User_EmailHash(emailHash);
     }
 
+    /** Lookup by plaintext email; the repository matches it through the indexed emailHash */
+    public Optional<Order> findByEmail(String email) {
+        return repo.findByAgent_Lead_User_Email(email);
+    }
+
+    /** Orders whose user's mobile number ends with {@code digits} (at least 4), through its blind index */
+    public List<Order> findByMobileEndingWith(String digits) {
+        return blindIndexSearch.find(Order.class, "agent.lead.user.mobileNumber", Match.SUFFIX, digits);
+    }
+
+    /** Orders whose user's email is at {@code domain}, through its blind index */
+    public List<Order> findByEmailDomain(String domain) {
+        return blindIndexSearch.find(Order.class, "agent.lead.user.email", Match.AFTER, domain);
+    }
+
+    /** One page of dashboard rows; the projection leaves every other encrypted field unread */
+    public List<OrderSummary> dashboard(int page, int size) {
+        return repo.findDashboardRows(PageRequest.of(page, size)).stream()
+                .map(o -> new OrderSummary(o.getOrderId(), MaskingUtil.maskEmail(emailOf(o))))
+                .toList();
+    }
+
+    private static String emailOf(Order order) {
+        if (order.getAgent() == null || order.getAgent().getLead() == null || order.getAgent().getLead().getUser() == null) {
+            return null;
+        }
+        return order.getAgent().getLead().getUser().getEmail();
+    }
+
     public void update() {
-        List<Order> all = repo.findAll();
-        Order first = all.getFirst();
+        Order first = repo.findAll(PageRequest.of(0, 1)).getContent().getFirst();
         first.getAgent().getLead().getUser().setMobileNumber("9850702373");
 
-        repo.save(first);
+        // with encryption.dirty-tracking.enabled, $sets the mobile number and its hash only
+        partialUpdates.saveChanges(first);
     }
 }
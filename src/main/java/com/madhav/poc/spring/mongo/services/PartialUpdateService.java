@@ -0,0 +1,63 @@
+package com.madhav.poc.spring.mongo.services;
+
+import com.madhav.poc.spring.mongo.util.DirtyFields;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import com.madhav.poc.spring.mongo.util.EntitySnapshots;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.BasicUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+/**
+ * Saves a loaded entity by sending only the paths that changed since it was read, as one
+ * {@code $set} / {@code $unset}. Encrypted values that did not change keep their stored
+ * ciphertext and hash, so they are neither re-encrypted nor re-hashed. Entities without a
+ * snapshot (tracking off, codec mode, never loaded, or evicted) are saved in full.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PartialUpdateService {
+
+    private final MongoTemplate mongoTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final EntitySnapshots snapshots;
+
+    public <T> T saveChanges(T entity) {
+        EntitySnapshots.Snapshot snapshot = snapshots.get(entity);
+        if (snapshot == null) return mongoTemplate.save(entity);
+
+        Document before = snapshot.document();
+        int encrypted = DirtyFields.encryptChanged(entity, before, snapshot.decrypted(), encryptionUtil);
+        Document after = new Document();
+        mongoTemplate.getConverter().write(entity, after);
+        EncryptionReflectionUtils.applyHashes(entity, after, encryptionUtil);
+
+        Document set = new Document();
+        Document unset = new Document();
+        DirtyFields.diff(before, after, set, unset);
+        if (set.isEmpty() && unset.isEmpty()) return entity;
+
+        Document update = new Document();
+        if (!set.isEmpty()) update.put("$set", set);
+        if (!unset.isEmpty()) update.put("$unset", unset);
+        String collection = mongoTemplate.getCollectionName(entity.getClass());
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(after.get("_id"))), new BasicUpdate(update), collection);
+        if (result.getMatchedCount() == 0) {
+            // deleted since it was read: write it back whole, as save would
+            snapshots.forget(entity);
+            return mongoTemplate.save(entity);
+        }
+        log.debug("Updated {} path(s) of {} in '{}', {} value(s) re-encrypted",
+                set.size() + unset.size(), after.get("_id"), collection, encrypted);
+        snapshots.track(entity, after);
+        return entity;
+    }
+}
@@ -0,0 +1,39 @@
+package com.madhav.poc.spring.mongo.services;
+
+import com.madhav.poc.spring.mongo.model.Order;
+import com.madhav.poc.spring.mongo.repository.ReactiveOrderRepository;
+import com.madhav.poc.spring.mongo.util.QueryValueCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/** Non-blocking order access; encryption runs in {@code ReactiveMongoEncryptionListener}. */
+@Service
+@RequiredArgsConstructor
+public class ReactiveOrderService {
+    private final ReactiveOrderRepository repo;
+    private final QueryValueCache queryValueCache;
+
+    public Mono<Order> save(Order order) {
+        return repo.save(order); // Will encrypt automatically
+    }
+
+    public Flux<Order> saveAll(Flux<Order> orders) {
+        return repo.saveAll(orders);
+    }
+
+    public Mono<Order> getById(String id) {
+        return repo.findById(id); // Will decrypt automatically
+    }
+
+    /** Streams matches, each decrypted as it arrives */
+    public Flux<Order> getByEmail(String email) {
+        return Mono.fromCallable(() -> queryValueCache.storedForms(email))
+                .flatMapMany(repo::findByEncryptedEmailIn);
+    }
+
+    public Mono<Order> findByEmail(String email) {
+        return repo.findByAgent_Lead_User_Email(email);
+    }
+}
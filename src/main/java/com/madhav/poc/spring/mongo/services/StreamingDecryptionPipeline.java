@@ -0,0 +1,96 @@
+package com.madhav.poc.spring.mongo.services;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils;
+import com.madhav.poc.spring.mongo.util.EncryptionUtil;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Converts and decrypts a stream of stored Documents in chunks, in parallel, and hands the
+ * entities to a sink in the order they were read. While the caller consumes one chunk the next
+ * ones are decrypted; at most {@code maxInFlight} chunks are outstanding, after which the source
+ * (a MongoDB cursor) is no longer pulled. Memory is bounded by {@code chunkSize * maxInFlight}
+ * entities, whatever the size of the collection.
+ */
+@Component
+public class StreamingDecryptionPipeline {
+
+    private final EncryptionUtil encryptionUtil;
+    private final MongoConverter converter;
+    private final EncryptionProperties.Export settings;
+    private final boolean codec;
+    private final ForkJoinPool pool;
+
+    public StreamingDecryptionPipeline(EncryptionUtil encryptionUtil, MongoConverter converter, EncryptionProperties properties) {
+        this.encryptionUtil = encryptionUtil;
+        this.converter = converter;
+        this.settings = properties.getExport();
+        this.codec = properties.getMode() == EncryptionProperties.Mode.CODEC;
+        this.pool = new ForkJoinPool(settings.getParallelism());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /** Documents per cursor round trip for the queries feeding this pipeline */
+    public int batchSize() {
+        return settings.getBatchSize();
+    }
+
+    /**
+     * Reads every Document of {@code documents} as {@code type}, decrypted, and passes it to
+     * {@code sink} on the calling thread, in source order. Closes the stream. Returns the count.
+     */
+    public <T> long decryptAll(Stream<Document> documents, Class<T> type, Consumer<? super T> sink) {
+        ArrayDeque<Future<List<T>>> inFlight = new ArrayDeque<>(settings.getMaxInFlight());
+        long count = 0;
+        try (documents) {
+            Iterator<Document> it = documents.iterator();
+            while (it.hasNext()) {
+                List<Document> chunk = new ArrayList<>(settings.getChunkSize());
+                while (it.hasNext() && chunk.size() < settings.getChunkSize()) chunk.add(it.next());
+                inFlight.add(pool.submit(() -> chunk.parallelStream().map(d -> read(type, d)).toList()));
+
+                if (inFlight.size() >= settings.getMaxInFlight()) count += drain(inFlight.poll(), sink);
+            }
+            while (!inFlight.isEmpty()) count += drain(inFlight.poll(), sink);
+        } finally {
+            inFlight.forEach(f -> f.cancel(false));
+        }
+        return count;
+    }
+
+    private static <T> int drain(Future<List<T>> chunk, Consumer<? super T> sink) {
+        List<T> entities;
+        try {
+            entities = chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while decrypting chunk", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while decrypting chunk", e.getCause());
+        }
+        entities.forEach(sink);
+        return entities.size();
+    }
+
+    private <T> T read(Class<T> type, Document document) {
+        T entity = converter.read(type, document);
+        // the converter decrypts in codec mode; lazy fields are decrypted here too, not by the serializer's getter calls
+        if (!codec) EncryptionReflectionUtils.decryptFetched(entity, document, encryptionUtil);
+        return entity;
+    }
+}
@@ -0,0 +1,34 @@
+package com.madhav.poc.spring.mongo.util;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Blind index of an {@link Encrypted} String field, for partial matches without decrypting the
+ * collection: keyed hashes of the parts below, stored as an indexed array next to the
+ * ciphertext. Set through {@link Encrypted#blindIndex()}; nothing is indexed by default.
+ * Searched with {@code BlindIndexSearch}.
+ */
+@Target({})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BlindIndex {
+
+    /** Lengths of leading parts to index, e.g. {@code {3}} for "starts with abc" */
+    int[] prefixes() default {};
+
+    /** Lengths of trailing parts to index, e.g. {@code {4}} for "mobile ending in 4567" */
+    int[] suffixes() default {};
+
+    /** Index every part of this many characters, for "contains"; 0 = none */
+    int ngram() default 0;
+
+    /** Index the part after the last occurrence of this separator, e.g. {@code "@"} for an email's domain */
+    String after() default "";
+
+    /** Field holding the tokens; if blank, uses "<fieldName>_bidx" */
+    String fieldName() default "";
+
+    /** Lower-case values before indexing and searching, so matches ignore case */
+    boolean ignoreCase() default true;
+}
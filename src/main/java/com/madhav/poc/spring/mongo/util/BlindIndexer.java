@@ -0,0 +1,178 @@
+package com.madhav.poc.spring.mongo.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Tokens of {@link BlindIndex} fields: HMAC-SHA256 of each indexed part, truncated to 96 bits.
+ * Each kind of part is hashed with its own tag, so a prefix never matches an n-gram of the same
+ * text. The key is derived from {@code encryption.secret} and does not change with key rotation,
+ * so stored tokens stay valid while values are re-encrypted.
+ *
+ * <p>Tokens only narrow a search down to candidates: truncation and the parts chosen at query
+ * time may let through values that do not match, so callers check the decrypted value with
+ * {@link #matcher}.
+ *
+ * <p>Tokens are computed from plaintext by the entity encrypt pass and {@linkplain #attach
+ * attached} to the ciphertext it produced, so {@code onBeforeSave} finds them next to the
+ * same String in the converted Document instead of decrypting it again.
+ */
+public final class BlindIndexer {
+
+    public enum Match {
+        /** Value starts with the text; needs a {@code prefixes} length no longer than it */
+        PREFIX,
+        /** Value ends with the text; needs a {@code suffixes} length no longer than it */
+        SUFFIX,
+        /** Value contains the text; needs {@code ngram} no longer than it */
+        CONTAINS,
+        /** Part after the {@code after} separator equals the text */
+        AFTER
+    }
+
+    private static final String HMAC = "HmacSHA256";
+    private static final int TOKEN_BYTES = 12;
+
+    private final SecretKeySpec key;
+    private final CryptoPool<Mac> macs = new CryptoPool<>(this::newMac);
+    // weakly keyed by ciphertext identity: an entry lives as long as the entity or Document holding it
+    private final Cache<String, List<String>> attached = Caffeine.newBuilder().weakKeys().build();
+
+    BlindIndexer(String secret) {
+        try {
+            byte[] derived = MessageDigest.getInstance("SHA-256").digest(("bidx:" + secret).getBytes(StandardCharsets.UTF_8));
+            this.key = new SecretKeySpec(derived, HMAC);
+        } catch (Exception e) {
+            throw new IllegalStateException("Error deriving blind index key", e);
+        }
+    }
+
+    public static boolean isConfigured(BlindIndex spec) {
+        return spec != null && (spec.prefixes().length > 0 || spec.suffixes().length > 0 || spec.ngram() > 0
+                || !spec.after().isEmpty());
+    }
+
+    /** Distinct tokens to store for {@code plaintext} */
+    public List<String> tokens(String plaintext, BlindIndex spec) {
+        String text = normalize(plaintext, spec);
+        int[] cps = text.codePoints().toArray();
+        Set<String> out = new LinkedHashSet<>();
+        for (int p : spec.prefixes()) {
+            if (p > 0 && p <= cps.length) out.add(token('p', new String(cps, 0, p)));
+        }
+        for (int s : spec.suffixes()) {
+            if (s > 0 && s <= cps.length) out.add(token('s', new String(cps, cps.length - s, s)));
+        }
+        int n = spec.ngram();
+        for (int i = 0; n > 0 && i + n <= cps.length; i++) {
+            out.add(token('n', new String(cps, i, n)));
+        }
+        if (!spec.after().isEmpty()) {
+            int at = text.lastIndexOf(spec.after());
+            if (at >= 0) out.add(token('a', text.substring(at + spec.after().length())));
+        }
+        return List.copyOf(out);
+    }
+
+    /** Remembers {@code tokens} as those of the plaintext {@code ciphertext} was encrypted from */
+    public void attach(String ciphertext, List<String> tokens) {
+        attached.put(ciphertext, tokens);
+    }
+
+    /** Tokens attached to this ciphertext instance by the encrypt pass, or null */
+    public List<String> attached(String ciphertext) {
+        return attached.getIfPresent(ciphertext);
+    }
+
+    /**
+     * Tokens every stored value matching {@code value} has; a query on all of them returns a
+     * superset of the matches.
+     *
+     * @throws IllegalArgumentException if {@code spec} does not index parts short enough for {@code value}
+     */
+    public List<String> queryTokens(String value, BlindIndex spec, Match match) {
+        String text = normalize(value, spec);
+        int[] cps = text.codePoints().toArray();
+        switch (match) {
+            case PREFIX -> {
+                int p = longestUpTo(spec.prefixes(), cps.length);
+                if (p > 0) return List.of(token('p', new String(cps, 0, p)));
+            }
+            case SUFFIX -> {
+                int s = longestUpTo(spec.suffixes(), cps.length);
+                if (s > 0) return List.of(token('s', new String(cps, cps.length - s, s)));
+            }
+            case CONTAINS -> {
+                int n = spec.ngram();
+                if (n > 0 && n <= cps.length) {
+                    Set<String> out = new LinkedHashSet<>();
+                    for (int i = 0; i + n <= cps.length; i++) out.add(token('n', new String(cps, i, n)));
+                    return List.copyOf(out);
+                }
+            }
+            case AFTER -> {
+                if (!spec.after().isEmpty()) return List.of(token('a', text));
+            }
+        }
+        throw new IllegalArgumentException(String.format("%s search for %d characters is not covered by %s",
+                match, cps.length, spec));
+    }
+
+    /** Whether a decrypted value really matches; applied to the candidates the tokens found */
+    public static Predicate<String> matcher(String value, BlindIndex spec, Match match) {
+        String text = normalize(value, spec);
+        return plaintext -> {
+            if (plaintext == null) return false;
+            String candidate = normalize(plaintext, spec);
+            return switch (match) {
+                case PREFIX -> candidate.startsWith(text);
+                case SUFFIX -> candidate.endsWith(text);
+                case CONTAINS -> candidate.contains(text);
+                case AFTER -> {
+                    int at = candidate.lastIndexOf(spec.after());
+                    yield at >= 0 && candidate.substring(at + spec.after().length()).equals(text);
+                }
+            };
+        };
+    }
+
+    private static int longestUpTo(int[] lengths, int max) {
+        int best = 0;
+        for (int length : lengths) {
+            if (length <= max && length > best) best = length;
+        }
+        return best;
+    }
+
+    private static String normalize(String value, BlindIndex spec) {
+        return spec.ignoreCase() ? value.toLowerCase(Locale.ROOT) : value;
+    }
+
+    private String token(char kind, String part) {
+        Mac mac = macs.borrow();
+        try {
+            mac.update((byte) kind);
+            byte[] digest = mac.doFinal(part.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(Arrays.copyOf(digest, TOKEN_BYTES));
+        } finally {
+            macs.release(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac;
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating " + HMAC, e);
+        }
+    }
+}
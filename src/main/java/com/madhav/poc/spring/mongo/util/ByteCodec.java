@@ -0,0 +1,143 @@
+package com.madhav.poc.spring.mongo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Base64 (RFC 4648, padded) encoding straight from a byte range into a reusable buffer,
+ * producing the same text as {@link java.util.Base64#getEncoder()}, and the reverse
+ * straight from a range of a String. UTF-8 encoding into a reusable buffer, with the same
+ * bytes as {@code String.getBytes(UTF_8)}. None of these allocate.
+ */
+final class ByteCodec {
+
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int[] DECODE = new int[128];
+
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < ALPHABET.length; i++) DECODE[ALPHABET[i]] = i;
+    }
+
+    private ByteCodec() {}
+
+    static int base64Length(int len) {
+        return 4 * ((len + 2) / 3);
+    }
+
+    /** Writes base64 of {@code src[off, off+len)} into {@code dst} at {@code dp}; returns the new position. */
+    static int encodeBase64(byte[] src, int off, int len, byte[] dst, int dp) {
+        int end = off + len - len % 3;
+        int sp = off;
+        while (sp < end) {
+            int bits = (src[sp++] & 0xff) << 16 | (src[sp++] & 0xff) << 8 | (src[sp++] & 0xff);
+            dst[dp++] = ALPHABET[(bits >>> 18) & 0x3f];
+            dst[dp++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[dp++] = ALPHABET[(bits >>> 6) & 0x3f];
+            dst[dp++] = ALPHABET[bits & 0x3f];
+        }
+        int rest = off + len - sp;
+        if (rest > 0) {
+            int b0 = src[sp++] & 0xff;
+            dst[dp++] = ALPHABET[b0 >> 2];
+            if (rest == 1) {
+                dst[dp++] = ALPHABET[(b0 << 4) & 0x3f];
+                dst[dp++] = '=';
+            } else {
+                int b1 = src[sp] & 0xff;
+                dst[dp++] = ALPHABET[(b0 << 4) & 0x3f | (b1 >> 4)];
+                dst[dp++] = ALPHABET[(b1 << 2) & 0x3f];
+            }
+            dst[dp++] = '=';
+        }
+        return dp;
+    }
+
+    /** {@code prefix + base64(src[off, off+len))} built in {@code scratch}, which must be large enough. */
+    static String prefixedBase64(byte[] prefix, byte[] src, int off, int len, byte[] scratch) {
+        System.arraycopy(prefix, 0, scratch, 0, prefix.length);
+        int n = encodeBase64(src, off, len, scratch, prefix.length);
+        return new String(scratch, 0, n, StandardCharsets.ISO_8859_1);
+    }
+
+    /** Upper bound of the bytes {@link #decodeBase64} writes for {@code chars} characters */
+    static int maxDecodedLength(int chars) {
+        return chars / 4 * 3 + 3;
+    }
+
+    /**
+     * Decodes the base64 text {@code s[from, s.length())}, padded or not, into {@code dst};
+     * returns the number of bytes written.
+     *
+     * @throws IllegalArgumentException on a character outside the alphabet or a truncated group
+     */
+    static int decodeBase64(String s, int from, byte[] dst) {
+        int end = s.length();
+        while (end > from && s.charAt(end - 1) == '=') end--;
+        int dp = 0;
+        int bits = 0;
+        int n = 0;
+        for (int i = from; i < end; i++) {
+            char c = s.charAt(i);
+            int v = c < 128 ? DECODE[c] : -1;
+            if (v < 0) throw new IllegalArgumentException("Illegal base64 character " + Integer.toHexString(c));
+            bits = bits << 6 | v;
+            if (++n == 4) {
+                dst[dp++] = (byte) (bits >> 16);
+                dst[dp++] = (byte) (bits >> 8);
+                dst[dp++] = (byte) bits;
+                bits = 0;
+                n = 0;
+            }
+        }
+        if (n == 2) {
+            dst[dp++] = (byte) (bits >> 4);
+        } else if (n == 3) {
+            dst[dp++] = (byte) (bits >> 10);
+            dst[dp++] = (byte) (bits >> 2);
+        } else if (n == 1) {
+            throw new IllegalArgumentException("Truncated base64 input");
+        }
+        return dp;
+    }
+
+    /** Upper bound of the bytes {@link #encodeUtf8} writes for {@code s} */
+    static int maxUtf8Length(String s) {
+        return s.length() * 3;
+    }
+
+    /**
+     * Writes {@code s} as UTF-8 into {@code dst}, which must hold {@link #maxUtf8Length} bytes;
+     * returns the number of bytes written. Unpaired surrogates become {@code '?'}, as in
+     * {@code String.getBytes(UTF_8)}.
+     */
+    static int encodeUtf8(String s, byte[] dst) {
+        int dp = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                dst[dp++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[dp++] = (byte) (0xC0 | c >> 6);
+                dst[dp++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    dst[dp++] = (byte) (0xF0 | cp >> 18);
+                    dst[dp++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    dst[dp++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    dst[dp++] = (byte) (0x80 | cp & 0x3F);
+                } else {
+                    dst[dp++] = '?';
+                }
+            } else {
+                dst[dp++] = (byte) (0xE0 | c >> 12);
+                dst[dp++] = (byte) (0x80 | c >> 6 & 0x3F);
+                dst[dp++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return dp;
+    }
+}
@@ -0,0 +1,53 @@
+package com.madhav.poc.spring.mongo.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, lock-free pool for JCA objects that are expensive to look up but not thread-safe
+ * (Cipher, Mac, MessageDigest) together with their scratch buffers. Unlike a ThreadLocal it
+ * holds one instance per concurrent caller rather than per thread, and it never blocks or
+ * takes a monitor, so it is safe to use from virtual threads.
+ */
+public final class CryptoPool<T> {
+
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final Supplier<T> factory;
+    private final int maxIdle;
+
+    public CryptoPool(Supplier<T> factory) {
+        this(factory, Math.max(8, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    public CryptoPool(Supplier<T> factory, int maxIdle) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    public T borrow() {
+        T item = idle.poll();
+        if (item != null) {
+            idleCount.decrementAndGet();
+            return item;
+        }
+        created.increment();
+        return factory.get();
+    }
+
+    public void release(T item) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(item);
+        } else {
+            idleCount.decrementAndGet(); // pool full: let it be collected
+        }
+    }
+
+    /** Number of instances created so far; stays flat once the pool is warm. */
+    public long created() {
+        return created.sum();
+    }
+}
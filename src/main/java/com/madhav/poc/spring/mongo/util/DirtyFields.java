@@ -0,0 +1,156 @@
+package com.madhav.poc.spring.mongo.util;
+
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata.FieldPlan;
+import org.bson.Document;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Dirty checking of {@link Encrypted} fields against the Document an entity was loaded from, for
+ * targeted updates. Nothing is copied on load: the snapshot is the fetched Document itself, plus
+ * the plaintext instances the decrypt pass set, mapped to the ciphertext they came from.
+ */
+public final class DirtyFields {
+
+    private DirtyFields() {}
+
+    /** Plaintext instances {@code entity} holds that were decrypted from {@code stored}, keyed by identity */
+    public static Map<String, String> decryptedValues(Object entity, Document stored) {
+        Map<String, String> out = new IdentityHashMap<>();
+        record(entity, stored, out);
+        return out;
+    }
+
+    private static void record(Object entity, Document stored, Map<String, String> out) {
+        if (entity == null || stored == null) return;
+        for (FieldPlan f : EncryptionMetadata.planFor(entity.getClass()).fieldArray()) {
+            Object s = stored.get(f.documentKey());
+            if (s == null) continue;
+            Object value = f.get(entity);
+            if (value == null) continue;
+            switch (f.kind()) {
+                case ENCRYPTED -> {
+                    if (value instanceof String v && s instanceof String c && !v.equals(c)) out.put(v, c);
+                }
+                case NESTED -> record(value, s instanceof Document d ? d : null, out);
+                case CONTAINER -> forEachElement(value, s, (item, doc) -> record(item, doc, out));
+            }
+        }
+    }
+
+    /**
+     * Encrypt pass that only encrypts and hashes values changed since load. A value that is still
+     * the stored ciphertext, or the plaintext it was decrypted to, gets the stored ciphertext back,
+     * unless that was written under an older key or in the other mode. Returns the number of
+     * values encrypted.
+     *
+     * @param decrypted from {@link #decryptedValues}; values revealed later (lazy fields) are
+     *                  compared with one AES operation instead of being re-encrypted and re-hashed
+     */
+    public static int encryptChanged(Object entity, Document stored, Map<String, String> decrypted, EncryptionUtil util) {
+        if (entity == null) return 0;
+        int changed = 0;
+        for (FieldPlan f : EncryptionMetadata.planFor(entity.getClass()).fieldArray()) {
+            Object value = f.get(entity);
+            if (value == null) continue;
+            Object s = stored == null ? null : stored.get(f.documentKey());
+
+            switch (f.kind()) {
+                case ENCRYPTED -> {
+                    if (!(value instanceof String v)) {
+                        // a List/array/Map of Strings: converted as a whole, like a full save
+                        EncryptionReflectionUtils.processValues(value, f.encrypted(), util, EncryptionReflectionUtils.Pass.ENCRYPT);
+                        continue;
+                    }
+                    String c = s instanceof String sc && util.isEncrypted(sc) ? sc : null;
+                    String hash = f.hasHashField() ? f.getHash(entity) : null;
+                    if (c != null && util.isCurrent(c, f.randomized()) && unchanged(v, c, f, decrypted, util)) {
+                        if (v != c) f.set(entity, c);
+                        if (f.encrypted().blindIndex() != null) keepTokens(v, c, stored, f, util);
+                        if (f.hasHashField() && !util.hasher().isCurrent(hash)) {
+                            f.setHash(entity, EncryptionReflectionUtils.hashField(c, hash, f.encrypted(), util));
+                        }
+                        continue;
+                    }
+                    if (f.hasHashField()) {
+                        String computed = EncryptionReflectionUtils.hashField(v, hash, f.encrypted(), util);
+                        if (computed != hash) f.setHash(entity, computed);
+                    }
+                    String encrypted = EncryptionReflectionUtils.encryptField(v, f.encrypted(), util);
+                    if (encrypted != v) f.set(entity, encrypted);
+                    changed++;
+                }
+                case NESTED -> changed += encryptChanged(value, s instanceof Document d ? d : null, decrypted, util);
+                case CONTAINER -> {
+                    int[] count = {0};
+                    forEachElement(value, s, (item, doc) -> count[0] += encryptChanged(item, doc, decrypted, util));
+                    changed += count[0];
+                }
+            }
+        }
+        return changed;
+    }
+
+    /** Attaches the stored tokens of an unchanged value to {@code c}, so onBeforeSave writes them back unchanged */
+    @SuppressWarnings("unchecked")
+    private static void keepTokens(String v, String c, Document stored, FieldPlan f, EncryptionUtil util) {
+        if (stored.get(f.encrypted().blindField()) instanceof List<?> tokens) {
+            util.blindIndexer().attach(c, (List<String>) tokens);
+        } else if (!util.isEncrypted(v)) {
+            util.blindIndexer().attach(c, util.blindIndexer().tokens(v, f.encrypted().blindIndex()));
+        }
+    }
+
+    /** {@code c} is current; {@code v} is what the entity holds now */
+    private static boolean unchanged(String v, String c, FieldPlan f, Map<String, String> decrypted, EncryptionUtil util) {
+        if (v.equals(c) || c.equals(decrypted.get(v))) return true;
+        if (util.isEncrypted(v)) return false; // other ciphertext set by the caller
+        // deterministic: the same plaintext encrypts to the same current ciphertext
+        return f.randomized() ? v.equals(util.decrypt(c)) : c.equals(util.encrypt(v, false));
+    }
+
+    /** Elements of a List/array paired with stored sub-documents by index, Map values by key; null when unmatched */
+    private static void forEachElement(Object container, Object stored, BiConsumer<Object, Document> action) {
+        if (container instanceof List<?> list) {
+            List<?> docs = stored instanceof List<?> l && l.size() == list.size() ? l : null;
+            for (int i = 0; i < list.size(); i++) action.accept(list.get(i), docs != null && docs.get(i) instanceof Document d ? d : null);
+        } else if (container instanceof Iterable<?> iterable) {
+            iterable.forEach(item -> action.accept(item, null));
+        } else if (container instanceof Object[] items) {
+            List<?> docs = stored instanceof List<?> l && l.size() == items.length ? l : null;
+            for (int i = 0; i < items.length; i++) action.accept(items[i], docs != null && docs.get(i) instanceof Document d ? d : null);
+        } else if (container instanceof Map<?, ?> map) {
+            Document docs = stored instanceof Document d ? d : null;
+            map.forEach((k, v) -> action.accept(v, docs != null && docs.get(String.valueOf(k)) instanceof Document d ? d : null));
+        }
+    }
+
+    // ======== DOCUMENT DIFF ========
+
+    /**
+     * Fills {@code set} and {@code unset} with the dotted paths whose value differs between
+     * {@code before} and {@code after}, descending into sub-documents present in both. Arrays
+     * that differ are set whole. {@code _id} is never part of the result.
+     */
+    public static void diff(Document before, Document after, Document set, Document unset) {
+        diff("", before, after, set, unset);
+    }
+
+    private static void diff(String prefix, Document before, Document after, Document set, Document unset) {
+        for (Map.Entry<String, Object> e : after.entrySet()) {
+            String key = e.getKey();
+            if (prefix.isEmpty() && key.equals("_id")) continue;
+            Object now = e.getValue();
+            Object then = before.get(key);
+            if (now instanceof Document n && then instanceof Document t) {
+                diff(prefix + key + ".", t, n, set, unset);
+            } else if (!before.containsKey(key) || !Objects.deepEquals(then, now)) {
+                set.put(prefix + key, now);
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key) && !(prefix.isEmpty() && key.equals("_id"))) unset.put(prefix + key, "");
+        }
+    }
+}
@@ -15,4 +15,38 @@ public @interface Encrypted {
 
     /** Optional custom hash field name; if blank, uses "<fieldName>_hash" */
     String hashFieldName() default "";
+
+    /** Index the hash column as unique (sparse, so documents without the value do not collide) */
+    boolean uniqueHash() default false;
+
+    /**
+     * Sibling fields of the declaring class appended after the hash column in its index, for
+     * queries that always filter on both, e.g. {@code {"name"}}. Empty: single-field index.
+     */
+    String[] hashIndexWith() default {};
+
+    /**
+     * Field may stay encrypted after loading when lazy decryption is enabled; its getter must
+     * return {@code LazyDecryption.reveal(value)}. Only applies to scalar String fields.
+     */
+    boolean lazy() default false;
+
+    /**
+     * How the value is encrypted. Only fields matched by ciphertext in queries need
+     * {@link Mode#DETERMINISTIC}; query the others through their hash column.
+     */
+    Mode mode() default Mode.DETERMINISTIC;
+
+    /**
+     * Keyed hashes of prefixes, suffixes or n-grams, for partial searches. Only applies to
+     * scalar String fields.
+     */
+    BlindIndex blindIndex() default @BlindIndex;
+
+    enum Mode {
+        /** Same plaintext, same ciphertext (AES/CBC, fixed IV per key): supports equality queries on the stored value */
+        DETERMINISTIC,
+        /** AES/GCM with a random IV stored with each value: hides repeated values, not queryable by ciphertext */
+        RANDOMIZED
+    }
 }
@@ -0,0 +1,70 @@
+package com.madhav.poc.spring.mongo.util;
+
+import java.lang.reflect.Field;
+
+/**
+ * One {@link Encrypted} field as the walkers see it: the annotation's flags and the field's
+ * metrics. Generated {@link EntityEncryptor}s hold one per field in a constant, with the flags
+ * resolved at compile time.
+ */
+public final class EncryptedField {
+
+    private final boolean randomized;
+    private final boolean lazy;
+    private final BlindIndex blindIndex;
+    private final String blindField;
+    private final EncryptionMetrics.FieldProbes probes;
+
+    private EncryptedField(Class<?> owner, String name, boolean randomized, boolean lazy, BlindIndex blindIndex) {
+        this.randomized = randomized;
+        this.lazy = lazy;
+        this.blindIndex = BlindIndexer.isConfigured(blindIndex) ? blindIndex : null;
+        this.blindField = this.blindIndex == null ? null
+                : blindIndex.fieldName().isBlank() ? (name + "_bidx") : blindIndex.fieldName();
+        this.probes = EncryptionMetrics.field(owner, name);
+    }
+
+    /** For generated encryptors; the blind index, if any, is read from the field's annotation */
+    public static EncryptedField of(Class<?> owner, String name, boolean randomized, boolean lazy) {
+        return new EncryptedField(owner, name, randomized, lazy, blindIndexOf(owner, name));
+    }
+
+    static EncryptedField of(Class<?> owner, String name, Encrypted ann) {
+        return new EncryptedField(owner, name, ann.mode() == Encrypted.Mode.RANDOMIZED, ann.lazy(),
+                ann.blindIndex());
+    }
+
+    private static BlindIndex blindIndexOf(Class<?> owner, String name) {
+        try {
+            Field f = owner.getDeclaredField(name);
+            Encrypted ann = f.getAnnotation(Encrypted.class);
+            return ann == null || f.getType() != String.class ? null : ann.blindIndex();
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    /** Encrypted with a random IV per value ({@link Encrypted.Mode#RANDOMIZED}) */
+    public boolean randomized() {
+        return randomized;
+    }
+
+    /** Scalar value may be left encrypted for {@link LazyDecryption} */
+    public boolean lazy() {
+        return lazy;
+    }
+
+    /** {@link BlindIndex} of a String field, null if it has none */
+    public BlindIndex blindIndex() {
+        return blindIndex;
+    }
+
+    /** Document key of the blind index token array, null if the field has none */
+    public String blindField() {
+        return blindField;
+    }
+
+    EncryptionMetrics.FieldProbes probes() {
+        return probes;
+    }
+}
@@ -0,0 +1,431 @@
+package com.madhav.poc.spring.mongo.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Scans each entity class once and caches an immutable plan of the fields the
+ * encryption walker has to visit. Fields that can never lead to an {@link Encrypted}
+ * value are dropped from the plan, so classes without PII anywhere under them end up
+ * with an empty plan and are skipped entirely.
+ */
+public final class EncryptionMetadata {
+
+    private static final ClassValue<ClassPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected ClassPlan computeValue(Class<?> type) {
+            return scan(type);
+        }
+    };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final String MAPPED_FIELD = "org.springframework.data.mongodb.core.mapping.Field";
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static volatile BiFunction<Class<?>, String, String> documentKeys;
+
+    private EncryptionMetadata() {}
+
+    /**
+     * Resolves document keys through the mapping context, which also applies the configured
+     * {@code FieldNamingStrategy}. Installed when the mapping context is initialized, before
+     * any plan is compiled or Document read; the resolver returns null for fields it does not map.
+     */
+    public static void useDocumentKeys(BiFunction<Class<?>, String, String> resolver) {
+        documentKeys = resolver;
+    }
+
+    /** Key of {@code owner}'s field {@code name} in the stored Document, resolved on first use */
+    public static DocumentKey documentKey(Class<?> owner, String name) {
+        return new DocumentKey(owner, name);
+    }
+
+    /** Key of {@code owner}'s field {@code name} in the stored Document, or {@code name} if there is no such field */
+    public static String storedName(Class<?> owner, String name) {
+        return resolveDocumentKey(owner, name);
+    }
+
+    public static ClassPlan planFor(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    public static boolean hasEncryptedFields(Class<?> type) {
+        // a generated encryptor answers without scanning the class
+        return EntityEncryptors.forClass(type) != null || !PLANS.get(type).isEmpty();
+    }
+
+    /** Value types the walker never descends into (JDK and BSON types, primitives, enums). */
+    static boolean isLeafType(Class<?> type) {
+        if (type.isPrimitive() || type.isEnum()) return true;
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("org.bson.");
+    }
+
+    // ======== PLAN MODEL ========
+
+    public static final class DocumentKey {
+        private final Class<?> owner;
+        private final String name;
+        private volatile String key;
+
+        private DocumentKey(Class<?> owner, String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+
+        public String get() {
+            String k = key;
+            if (k == null) key = k = resolveDocumentKey(owner, name);
+            return k;
+        }
+    }
+
+    public enum Kind {
+        /** Annotated with {@link Encrypted}: a String, or a List/array/Map of Strings */
+        ENCRYPTED,
+        /** Custom object that may contain encrypted fields */
+        NESTED,
+        /** JDK Iterable/array/Map whose elements may contain encrypted fields */
+        CONTAINER
+    }
+
+    public static final class ClassPlan {
+        private static final ClassPlan EMPTY = new ClassPlan(new FieldPlan[0]);
+
+        private final FieldPlan[] fields;
+
+        private ClassPlan(FieldPlan[] fields) {
+            this.fields = fields;
+        }
+
+        public boolean isEmpty() {
+            return fields.length == 0;
+        }
+
+        public List<FieldPlan> fields() {
+            return List.of(fields);
+        }
+
+        FieldPlan[] fieldArray() {
+            return fields;
+        }
+    }
+
+    public static final class FieldPlan {
+        private final String name;
+        private final DocumentKey documentKey;
+        private final Kind kind;
+        private final boolean hash;
+        private final String hashFieldName;
+        private final EncryptedField encrypted;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private MethodHandle hashGetter;
+        private MethodHandle hashSetter;
+
+        private FieldPlan(Class<?> owner, String name, Kind kind, Encrypted ann,
+                          MethodHandle getter, MethodHandle setter) {
+            this.name = name;
+            this.documentKey = new DocumentKey(owner, name);
+            this.kind = kind;
+            this.hash = ann != null && ann.hash();
+            this.hashFieldName = !hash ? null
+                    : ann.hashFieldName().isBlank() ? (name + "_hash") : ann.hashFieldName();
+            this.encrypted = kind == Kind.ENCRYPTED ? EncryptedField.of(owner, name, ann) : null;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /** Key of the field in the stored Document, as the mapping context names it */
+        public String documentKey() {
+            return documentKey.get();
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        public boolean hash() {
+            return hash;
+        }
+
+        /** Resolved hash column name, or null when the field is not hashed */
+        public String hashFieldName() {
+            return hashFieldName;
+        }
+
+        /** True if the declaring class has a String field named {@link #hashFieldName()} to carry the hash */
+        public boolean hasHashField() {
+            return hashSetter != null;
+        }
+
+        public String getHash(Object target) {
+            try {
+                return (String) (Object) hashGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw new RuntimeException("Error reading field " + hashFieldName, t);
+            }
+        }
+
+        public void setHash(Object target, String hash) {
+            try {
+                hashSetter.invokeExact(target, (Object) hash);
+            } catch (Throwable t) {
+                throw new RuntimeException("Error writing field " + hashFieldName, t);
+            }
+        }
+
+        /** Flags and metrics of an {@link Kind#ENCRYPTED} field, null for other kinds */
+        EncryptedField encrypted() {
+            return encrypted;
+        }
+
+        /** Scalar value may be left encrypted for {@link LazyDecryption} */
+        public boolean lazy() {
+            return encrypted != null && encrypted.lazy();
+        }
+
+        /** Encrypted with a random IV per value ({@link Encrypted.Mode#RANDOMIZED}) */
+        public boolean randomized() {
+            return encrypted != null && encrypted.randomized();
+        }
+
+        public Object get(Object target) {
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (Throwable t) {
+                throw new RuntimeException("Error reading field " + name, t);
+            }
+        }
+
+        public void set(Object target, Object value) {
+            if (setter == null) {
+                throw new RuntimeException("Field " + name + " is not writable");
+            }
+            try {
+                setter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw new RuntimeException("Error writing field " + name, t);
+            }
+        }
+    }
+
+    // ======== SCANNING ========
+
+    private static ClassPlan scan(Class<?> type) {
+        if (isLeafType(type) || type.isArray() || type.isInterface()) return ClassPlan.EMPTY;
+
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Cannot access " + type.getName() + " for encryption", e);
+        }
+
+        List<FieldPlan> plans = new ArrayList<>();
+        for (Field f : type.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) continue;
+
+            Encrypted ann = f.getAnnotation(Encrypted.class);
+            Class<?> ft = f.getType();
+            Kind kind;
+            if (ann != null) {
+                kind = Kind.ENCRYPTED;
+            } else if (ft.isArray() || (isLeafType(ft) && isContainer(ft))) {
+                if (!elementMayContainEncrypted(f.getGenericType(), new HashSet<>())) continue;
+                kind = Kind.CONTAINER;
+            } else if (!isLeafType(ft)) {
+                if (!mayContainEncrypted(ft, new HashSet<>())) continue;
+                kind = Kind.NESTED;
+            } else {
+                continue;
+            }
+
+            try {
+                MethodHandle getter = lookup.unreflectGetter(f).asType(GETTER_TYPE);
+                MethodHandle setter = null;
+                if (kind == Kind.ENCRYPTED && !Modifier.isFinal(f.getModifiers())) {
+                    setter = lookup.unreflectSetter(f).asType(SETTER_TYPE);
+                }
+                FieldPlan plan = new FieldPlan(type, f.getName(), kind, ann, getter, setter);
+                Field hashField = plan.hash ? hashSibling(type, plan.hashFieldName) : null;
+                if (hashField != null) {
+                    plan.hashGetter = lookup.unreflectGetter(hashField).asType(GETTER_TYPE);
+                    plan.hashSetter = lookup.unreflectSetter(hashField).asType(SETTER_TYPE);
+                }
+                plans.add(plan);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Cannot access field " + f.getName() + " of " + type.getName(), e);
+            }
+        }
+        return plans.isEmpty() ? ClassPlan.EMPTY : new ClassPlan(plans.toArray(new FieldPlan[0]));
+    }
+
+    private static String resolveDocumentKey(Class<?> owner, String name) {
+        BiFunction<Class<?>, String, String> resolver = documentKeys;
+        String key = resolver == null ? null : resolver.apply(owner, name);
+        if (key != null) return key;
+        try {
+            return annotatedKey(owner.getDeclaredField(name));
+        } catch (NoSuchFieldException e) {
+            return name; // a Document-only key, e.g. a hash column no field carries
+        }
+    }
+
+    /**
+     * Document key of {@code f} without a mapping context: its {@code @Field} name, else the Java
+     * name. Spring Data's {@code @Field} is read by name so this package stays free of Spring types.
+     */
+    private static String annotatedKey(Field f) {
+        for (Annotation a : f.getDeclaredAnnotations()) {
+            if (!a.annotationType().getName().equals(MAPPED_FIELD)) continue;
+            for (String attribute : new String[]{"name", "value"}) {
+                try {
+                    Object key = a.annotationType().getMethod(attribute).invoke(a);
+                    if (key instanceof String s && !s.isBlank()) return s;
+                } catch (ReflectiveOperationException e) {
+                    // attribute missing in this Spring Data version
+                }
+            }
+        }
+        return f.getName();
+    }
+
+    /** Getter handle of type {@code (Object)Object}, for walkers outside the cached plans */
+    static MethodHandle getter(Field f) {
+        try {
+            return MethodHandles.privateLookupIn(f.getDeclaringClass(), MethodHandles.lookup())
+                    .unreflectGetter(f).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Cannot access field " + f.getName() + " of " + f.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * Every {@link Encrypted} field declared by {@code root} or by a class reachable from it through
+     * field types and their generic element types, grouped by declaring class.
+     */
+    public static Map<Class<?>, List<Field>> encryptedFieldsReachableFrom(Class<?> root) {
+        Map<Class<?>, List<Field>> out = new LinkedHashMap<>();
+        collectEncryptedFields(root, new HashSet<>(), out);
+        return out;
+    }
+
+    /**
+     * Fields receiving the hash of an {@code @Encrypted(hash = true)} field, declared by
+     * {@code root} or a class reachable from it, grouped by declaring class.
+     */
+    public static Map<Class<?>, List<Field>> hashFieldsReachableFrom(Class<?> root) {
+        Map<Class<?>, List<Field>> out = new LinkedHashMap<>();
+        encryptedFieldsReachableFrom(root).forEach((type, fields) -> {
+            for (Field f : fields) {
+                Encrypted ann = f.getAnnotation(Encrypted.class);
+                if (!ann.hash()) continue;
+                Field hashField = hashSibling(type, ann.hashFieldName().isBlank() ? f.getName() + "_hash" : ann.hashFieldName());
+                if (hashField != null) out.computeIfAbsent(type, t -> new ArrayList<>()).add(hashField);
+            }
+        });
+        return out;
+    }
+
+    private static void collectEncryptedFields(Class<?> type, Set<Class<?>> visited, Map<Class<?>, List<Field>> out) {
+        if (type == null || isLeafType(type) || !visited.add(type)) return;
+        if (type.isArray()) {
+            collectEncryptedFields(type.getComponentType(), visited, out);
+            return;
+        }
+        for (Field f : type.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) continue;
+            if (f.isAnnotationPresent(Encrypted.class)) {
+                out.computeIfAbsent(type, t -> new ArrayList<>()).add(f);
+                continue;
+            }
+            Class<?> ft = f.getType();
+            if (ft.isArray() || (isLeafType(ft) && isContainer(ft))) {
+                collectEncryptedFields(elementClass(f.getGenericType()), visited, out);
+            } else {
+                collectEncryptedFields(ft, visited, out);
+            }
+        }
+    }
+
+    /** Writable String field that receives the hash of an encrypted field, if the class declares one. */
+    static Field hashSibling(Class<?> type, String hashFieldName) {
+        try {
+            Field f = type.getDeclaredField(hashFieldName);
+            int mod = f.getModifiers();
+            return f.getType() == String.class && !Modifier.isStatic(mod) && !Modifier.isFinal(mod) ? f : null;
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    private static boolean isContainer(Class<?> type) {
+        return Iterable.class.isAssignableFrom(type)
+                || Map.class.isAssignableFrom(type)
+                || type.isArray()
+                || type == Object.class;
+    }
+
+    /** Static check over declared field types; abstract types are assumed to possibly hold PII. */
+    private static boolean mayContainEncrypted(Class<?> type, Set<Class<?>> visiting) {
+        if (isLeafType(type)) return false;
+        if (type.isArray()) return mayContainEncrypted(type.getComponentType(), visiting);
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) return true;
+        if (!visiting.add(type)) return false; // cycle: decided by the other fields on the path
+
+        for (Field f : type.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) continue;
+            if (f.isAnnotationPresent(Encrypted.class)) return true;
+            Class<?> ft = f.getType();
+            if (!isLeafType(ft)) {
+                if (mayContainEncrypted(ft, visiting)) return true;
+            } else if (isContainer(ft) && elementMayContainEncrypted(f.getGenericType(), visiting)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean elementMayContainEncrypted(Type containerType, Set<Class<?>> visiting) {
+        Class<?> element = elementClass(containerType);
+        if (element == null || element == Object.class) return true; // unknown until runtime
+        if (isLeafType(element)) return isContainer(element) && element != Object.class;
+        return mayContainEncrypted(element, visiting);
+    }
+
+    /** Element type of an Iterable/Map/array declaration, or null if it cannot be resolved statically. */
+    private static Class<?> elementClass(Type type) {
+        if (type instanceof Class<?> c) {
+            return c.isArray() ? c.getComponentType() : null;
+        }
+        if (type instanceof GenericArrayType ga) {
+            return erasure(ga.getGenericComponentType());
+        }
+        if (type instanceof ParameterizedType pt) {
+            Class<?> raw = (Class<?>) pt.getRawType();
+            Type[] args = pt.getActualTypeArguments();
+            if (Map.class.isAssignableFrom(raw) && args.length == 2) return erasure(args[1]);
+            if (Iterable.class.isAssignableFrom(raw) && args.length == 1) return erasure(args[0]);
+        }
+        return null;
+    }
+
+    private static Class<?> erasure(Type type) {
+        if (type instanceof Class<?> c) return c;
+        if (type instanceof ParameterizedType pt) return (Class<?>) pt.getRawType();
+        if (type instanceof WildcardType wt) return erasure(wt.getUpperBounds()[0]);
+        if (type instanceof TypeVariable<?> tv) return erasure(tv.getBounds()[0]);
+        if (type instanceof GenericArrayType ga) return erasure(ga.getGenericComponentType()).arrayType();
+        return null;
+    }
+}
@@ -0,0 +1,198 @@
+package com.madhav.poc.spring.mongo.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sampled timings and counts for the encryption hot path, kept in plain {@link LongAdder}s
+ * so this package stays free of a metrics library; {@code EncryptionMetricsConfig} publishes
+ * every {@link Probe} to Micrometer.
+ *
+ * <p>Only 1 in {@code sampleRate} operations (chosen at random per call) is timed and counted;
+ * the others cost one random draw and a branch. Reported counts, bytes and total times are
+ * scaled back up by the sample rate, so they are estimates unless the rate is 1. Failures are
+ * rare and counted exactly.
+ */
+public final class EncryptionMetrics {
+
+    /** Returned by {@link #start()} when the call is not sampled */
+    static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = true;
+    private static volatile int sampleMask = 63;
+
+    private static final List<Probe> PROBES = new CopyOnWriteArrayList<>();
+    private static Consumer<Probe> listener;
+
+    // crypto primitives, whatever the caller
+    static final Probe ENCRYPT = probe("encryption.crypto", "AES encryptions", true, "op", "encrypt");
+    static final Probe DECRYPT = probe("encryption.crypto", "AES decryptions", true, "op", "decrypt");
+    static final Probe SHA256 = probe("encryption.crypto", "SHA-256 hashes", true, "op", "hash");
+
+    // decrypt failures swallowed while hashing: the hash is then taken over the ciphertext
+    static final Probe HASH_PLAN_DECRYPT_FAILURES = probe("encryption.decrypt.failures",
+            "Values that could not be decrypted for hashing", false, "stage", "hash-plan");
+    // the entity pass fails the save instead, or keeps the stored blind index tokens
+    static final Probe ENTITY_HASH_DECRYPT_FAILURES = probe("encryption.decrypt.failures",
+            "Values that could not be decrypted for hashing", false, "stage", "entity-hash");
+
+    private static final ClassValue<EntityProbes> ENTITIES = new ClassValue<>() {
+        @Override
+        protected EntityProbes computeValue(Class<?> type) {
+            return new EntityProbes(type.getSimpleName());
+        }
+    };
+
+    private static final ClassValue<Map<String, FieldProbes>> FIELDS = new ClassValue<>() {
+        @Override
+        protected Map<String, FieldProbes> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private EncryptionMetrics() {}
+
+    /**
+     * @param sampleRate time one in this many operations; rounded up to a power of two, 1 times all
+     */
+    public static void configure(boolean enable, int sampleRate) {
+        enabled = enable;
+        sampleMask = Integer.highestOneBit(Math.max(1, sampleRate) * 2 - 1) - 1;
+    }
+
+    public static int sampleRate() {
+        return sampleMask + 1;
+    }
+
+    /** Calls {@code onProbe} for every probe created so far and every one created later. */
+    public static synchronized void bind(Consumer<Probe> onProbe) {
+        listener = onProbe;
+        PROBES.forEach(onProbe);
+    }
+
+    static synchronized Probe probe(String name, String description, boolean timed, String... tags) {
+        Probe probe = new Probe(name, description, timed, List.of(tags));
+        PROBES.add(probe);
+        if (listener != null) listener.accept(probe);
+        return probe;
+    }
+
+    /** Start time if this call is sampled, else {@link #NOT_SAMPLED} */
+    static long start() {
+        if (!enabled || (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) return NOT_SAMPLED;
+        return System.nanoTime();
+    }
+
+    static EntityProbes entity(Class<?> type) {
+        return ENTITIES.get(type);
+    }
+
+    /** Probes of one field, shared by the reflective plan and a generated encryptor of its class */
+    static FieldProbes field(Class<?> owner, String name) {
+        return FIELDS.get(owner).computeIfAbsent(name, n -> new FieldProbes(owner, n));
+    }
+
+    // ======== PROBES ========
+
+    public static final class Probe {
+        private final String name;
+        private final String description;
+        private final boolean timed;
+        private final List<String> tags;
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder sampledNanos = new LongAdder();
+        private final LongAdder sampledBytes = new LongAdder();
+        private final LongAdder exact = new LongAdder();
+
+        private Probe(String name, String description, boolean timed, List<String> tags) {
+            this.name = name;
+            this.description = description;
+            this.timed = timed;
+            this.tags = tags;
+        }
+
+        /** Records a sampled operation started at {@code start}; no-op if it was not sampled. */
+        void stop(long start, int bytes) {
+            if (start == NOT_SAMPLED) return;
+            long elapsed = System.nanoTime() - start;
+            samples.increment();
+            sampledNanos.add(elapsed);
+            sampledBytes.add(bytes);
+        }
+
+        /** Counts a sampled event that has no duration */
+        void mark(long start) {
+            if (start != NOT_SAMPLED) samples.increment();
+        }
+
+        /** Counts an event exactly, without sampling */
+        void increment() {
+            exact.increment();
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public String description() {
+            return description;
+        }
+
+        /** Timer (count, total time and bytes) rather than a plain counter */
+        public boolean timed() {
+            return timed;
+        }
+
+        /** Alternating tag keys and values */
+        public List<String> tags() {
+            return tags;
+        }
+
+        public double count() {
+            return exact.sum() + samples.sum() * (double) sampleRate();
+        }
+
+        public double totalNanos() {
+            return sampledNanos.sum() * (double) sampleRate();
+        }
+
+        public double bytes() {
+            return sampledBytes.sum() * (double) sampleRate();
+        }
+    }
+
+    /** Whole-graph passes, tagged by the root entity class */
+    static final class EntityProbes {
+        final Probe encrypt;
+        final Probe decrypt;
+        final Probe hash;
+
+        private EntityProbes(String entity) {
+            encrypt = probe("encryption.entity", "Encrypt pass over an entity graph", true, "entity", entity, "stage", "encrypt");
+            decrypt = probe("encryption.entity", "Decrypt pass over an entity graph", true, "entity", entity, "stage", "decrypt");
+            hash = probe("encryption.entity", "Hashes applied to a converted Document", true, "entity", entity, "stage", "hash");
+        }
+    }
+
+    /** One {@link Encrypted} field */
+    static final class FieldProbes {
+        final Probe encrypt;
+        final Probe decrypt;
+        final Probe hash;
+        final Probe skipped;
+
+        FieldProbes(Class<?> owner, String field) {
+            String entity = owner.getSimpleName();
+            encrypt = probe("encryption.field", "Field encryptions", true, "entity", entity, "field", field, "op", "encrypt");
+            decrypt = probe("encryption.field", "Field decryptions", true, "entity", entity, "field", field, "op", "decrypt");
+            hash = probe("encryption.field", "Field hashes", true, "entity", entity, "field", field, "op", "hash");
+            skipped = probe("encryption.field.skipped", "Values already encrypted when saved", false,
+                    "entity", entity, "field", field);
+        }
+    }
+}
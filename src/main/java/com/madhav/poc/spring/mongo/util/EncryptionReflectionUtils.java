@@ -2,10 +2,10 @@ package com.madhav.poc.spring.mongo.util;
 
 import org.bson.Document;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.Field;
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata.ClassPlan;
+import com.madhav.poc.spring.mongo.util.EncryptionMetadata.FieldPlan;
+
 import java.util.*;
-import java.util.function.Function;
 
 public class EncryptionReflectionUtils {
 
@@ -13,276 +13,370 @@ public class EncryptionReflectionUtils {
 
     // ======== ENTITY PROCESSING (encrypt/decrypt) ========
 
+    public enum Pass { ENCRYPT, DECRYPT, DECRYPT_LAZY }
+
     public static void processEntity(Object entity, EncryptionUtil encryptionUtil, boolean encrypt) {
         if (entity == null) return;
-        Class<?> clazz = entity.getClass();
+        long start = EncryptionMetrics.start();
+        process(entity, null, encryptionUtil, encrypt ? Pass.ENCRYPT : Pass.DECRYPT);
+        if (start != EncryptionMetrics.NOT_SAMPLED) {
+            EncryptionMetrics.EntityProbes probes = EncryptionMetrics.entity(entity.getClass());
+            (encrypt ? probes.encrypt : probes.decrypt).stop(start, 0);
+        }
+    }
 
-        for (Field f : clazz.getDeclaredFields()) {
-            f.setAccessible(true);
-            try {
-                Object value = f.get(entity);
-                if (value == null) continue;
+    /**
+     * Decrypts {@code entity} as read from {@code fetched}, walking the plan in lockstep with the
+     * Document: fields (and whole subtrees) the query did not project are never read, so a
+     * projection fetching a few paths only pays for those.
+     */
+    public static void decryptFetched(Object entity, Document fetched, EncryptionUtil encryptionUtil) {
+        decryptFetched(entity, fetched, encryptionUtil, Pass.DECRYPT);
+    }
 
-                boolean annotated = f.isAnnotationPresent(Encrypted.class);
+    /**
+     * Decrypts like {@code processEntity(entity, util, false)} but leaves {@code lazy} scalar
+     * fields as ciphertext, to be decrypted on first access through {@link LazyDecryption}.
+     */
+    public static void deferDecryption(Object entity, EncryptionUtil encryptionUtil) {
+        deferDecryption(entity, null, encryptionUtil);
+    }
 
-                // Case 1: Annotated scalar String
-                if (annotated && value instanceof String str) {
-                    if (encrypt && !encryptionUtil.isEncrypted(str)) {
-                        f.set(entity, encryptionUtil.encrypt(str));
-                    } else if (!encrypt && encryptionUtil.isEncrypted(str)) {
-                        f.set(entity, encryptionUtil.decrypt(str));
-                    }
+    /** {@link #deferDecryption(Object, EncryptionUtil)} limited to the paths of {@code fetched}, as in {@link #decryptFetched} */
+    public static void deferDecryption(Object entity, Document fetched, EncryptionUtil encryptionUtil) {
+        decryptFetched(entity, fetched, encryptionUtil, Pass.DECRYPT_LAZY);
+    }
+
+    private static void decryptFetched(Object entity, Document fetched, EncryptionUtil encryptionUtil, Pass pass) {
+        if (entity == null) return;
+        long start = EncryptionMetrics.start();
+        process(entity, fetched, encryptionUtil, pass);
+        if (start != EncryptionMetrics.NOT_SAMPLED) EncryptionMetrics.entity(entity.getClass()).decrypt.stop(start, 0);
+    }
+
+    /**
+     * @param fetched the Document {@code entity} was read from, or null to visit every field;
+     *                a field absent from it was not projected and cannot hold ciphertext
+     */
+    @SuppressWarnings("unchecked")
+    private static void process(Object entity, Document fetched, EncryptionUtil encryptionUtil, Pass pass) {
+        if (entity == null) return;
+        EntityEncryptor<Object> generated = (EntityEncryptor<Object>) EntityEncryptors.forClass(entity.getClass());
+        if (generated != null) {
+            generated.process(entity, fetched, encryptionUtil, pass);
+            return;
+        }
+        ClassPlan plan = EncryptionMetadata.planFor(entity.getClass());
+        if (plan.isEmpty()) return; // no PII anywhere under this type
+
+        for (FieldPlan f : plan.fieldArray()) {
+            Object stored = null;
+            if (fetched != null) {
+                stored = fetched.get(f.documentKey());
+                if (stored == null) {
+                    // not projected: nothing below it was read
+                    if (f.kind() == EncryptionMetadata.Kind.ENCRYPTED) checkNotProjected(f.get(entity), f.documentKey(), encryptionUtil);
                     continue;
                 }
-
-                // Case 2: Annotated Collections/Arrays/Maps containing Strings
-                if (annotated) {
-                    if (value instanceof Iterable<?> it) {
-                        encryptIterableStrings(it, encryptionUtil, encrypt);
-                        continue;
-                    }
-                    if (value.getClass().isArray()) {
-                        encryptArrayStrings(value, encryptionUtil, encrypt);
-                        continue;
-                    }
-                    if (value instanceof Map<?, ?> map) {
-                        encryptMapStringValues((Map<?, ?>) map, encryptionUtil, encrypt);
-                        continue;
+            }
+            Object value = f.get(entity);
+            if (value == null) continue;
+
+            switch (f.kind()) {
+                case ENCRYPTED -> {
+                    if (value instanceof String str) {
+                        // Case 1: Annotated scalar String
+                        if (pass == Pass.ENCRYPT) {
+                            if (f.hasHashField()) {
+                                String hash = f.getHash(entity);
+                                String computed = hashField(str, hash, f.encrypted(), encryptionUtil);
+                                if (computed != hash) f.setHash(entity, computed);
+                            }
+                            String encrypted = encryptField(str, f.encrypted(), encryptionUtil);
+                            if (encrypted != str) f.set(entity, encrypted);
+                        } else {
+                            String decrypted = decryptField(str, f.encrypted(), encryptionUtil, pass);
+                            if (decrypted != str) f.set(entity, decrypted);
+                        }
+                    } else {
+                        // Case 2: Annotated Collections/Arrays/Maps containing Strings
+                        processValues(value, f.encrypted(), encryptionUtil, pass);
                     }
                 }
-
                 // Case 3: Nested custom object / collections / arrays / maps
-                if (!isJavaLangOrPrimitive(f.getType())) {
-                    processEntity(value, encryptionUtil, encrypt);
-                } else if (value instanceof Iterable<?> iterable) {
-                    for (Object item : iterable) processEntity(item, encryptionUtil, encrypt);
-                } else if (value.getClass().isArray()) {
-                    int length = Array.getLength(value);
-                    for (int i = 0; i < length; i++) processEntity(Array.get(value, i), encryptionUtil, encrypt);
-                } else if (value instanceof Map<?, ?> m) {
-                    for (Object entryObj : m.entrySet()) {
-                        Map.Entry<?, ?> e = (Map.Entry<?, ?>) entryObj;
-                        processEntity(e.getValue(), encryptionUtil, encrypt);
-                    }
-                }
-
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException("Error processing encryption", e);
+                case NESTED -> processNested(value, stored, encryptionUtil, pass);
+                case CONTAINER -> processElements(value, stored, encryptionUtil, pass);
             }
         }
     }
 
-    private static void encryptIterableStrings(Iterable<?> it, EncryptionUtil util, boolean encrypt) {
-        if (!(it instanceof List<?>)) {
-            // best-effort: iterate and replace if possible (only List allows set)
-            int idx = 0;
-            for (Object ignored : it) idx++;
-            return;
-        }
-        @SuppressWarnings("unchecked")
-        List<Object> list = (List<Object>) it;
-        ListIterator<Object> li = list.listIterator();
-        while (li.hasNext()) {
-            Object v = li.next();
-            if (v instanceof String s) {
-                if (encrypt && !util.isEncrypted(s)) li.set(util.encrypt(s));
-                else if (!encrypt && util.isEncrypted(s)) li.set(util.decrypt(s));
-            } else {
-                processEntity(v, util, encrypt);
-            }
+    // ======== FIELD STEPS (shared with generated encryptors) ========
+
+    /**
+     * Encrypt pass of a scalar field: the value to store, {@code value} itself if it is already
+     * ciphertext under the active key and the field's mode.
+     */
+    public static String encryptField(String value, EncryptedField f, EncryptionUtil util) {
+        EncryptionMetrics.FieldProbes probes = f.probes();
+        if (!util.isEncrypted(value)) {
+            long start = EncryptionMetrics.start();
+            String encrypted = util.encrypt(value, f.randomized());
+            probes.encrypt.stop(start, value.length());
+            if (f.blindIndex() != null) util.blindIndexer().attach(encrypted, util.blindIndexer().tokens(value, f.blindIndex()));
+            return encrypted;
         }
+        probes.skipped.mark(EncryptionMetrics.start());
+        // written under an older key or in the other mode: move it to the active key and the field's mode on save
+        String current = util.isCurrent(value, f.randomized()) ? value : util.reencrypt(value, f.randomized());
+        if (f.blindIndex() != null) carryTokens(value, current, f, util);
+        return current;
     }
 
-    private static void encryptArrayStrings(Object array, EncryptionUtil util, boolean encrypt) {
-        int len = Array.getLength(array);
-        for (int i = 0; i < len; i++) {
-            Object v = Array.get(array, i);
-            if (v instanceof String s) {
-                if (encrypt && !util.isEncrypted(s)) Array.set(array, i, util.encrypt(s));
-                else if (!encrypt && util.isEncrypted(s)) Array.set(array, i, util.decrypt(s));
-            } else {
-                processEntity(v, util, encrypt);
+    /**
+     * Attaches blind index tokens to {@code current}, the ciphertext kept or re-encrypted from
+     * {@code value}. Ciphertext this pass did not produce (a lazy field never read) is decrypted
+     * once; if that fails nothing is attached and the stored tokens are left alone.
+     */
+    private static void carryTokens(String value, String current, EncryptedField f, EncryptionUtil util) {
+        BlindIndexer indexer = util.blindIndexer();
+        List<String> tokens = indexer.attached(value);
+        if (tokens == null) {
+            try {
+                tokens = indexer.tokens(util.decrypt(value), f.blindIndex());
+            } catch (Exception ex) {
+                EncryptionMetrics.ENTITY_HASH_DECRYPT_FAILURES.increment();
+                return;
             }
+        } else if (current == value) {
+            return;
         }
+        indexer.attach(current, tokens);
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
-    private static void encryptMapStringValues(Map<?, ?> map, EncryptionUtil util, boolean encrypt) {
-        for (Map.Entry<?, ?> e : map.entrySet()) {
-            Object v = e.getValue();
-            if (v instanceof String s) {
-                Map.Entry rawEntry = (Map.Entry) e; // raw type to bypass wildcard
-                if (encrypt && !util.isEncrypted(s)) {
-                    rawEntry.setValue(util.encrypt(s));
-                } else if (!encrypt && util.isEncrypted(s)) {
-                    rawEntry.setValue(util.decrypt(s));
-                }
-            } else {
-                processEntity(v, util, encrypt); // recurse
-            }
+    /**
+     * Hash to carry next to a scalar field, called with the value before {@link #encryptField}:
+     * taken from plaintext we already hold, so onBeforeSave never decrypts it back. Returns
+     * {@code currentHash} itself when there is nothing to change. Ciphertext whose hash must be
+     * recomputed but which cannot be decrypted fails the save.
+     */
+    public static String hashField(String value, String currentHash, EncryptedField f, EncryptionUtil util) {
+        if (!util.isEncrypted(value)) {
+            long start = EncryptionMetrics.start();
+            String hash = util.hasher().hash(value);
+            f.probes().hash.stop(start, value.length());
+            return hash;
+        }
+        if (util.hasher().isCurrent(currentHash)) return currentHash;
+        // rare path: value was already encrypted but its hash field is empty or in an older format
+        try {
+            return util.hasher().hash(util.decrypt(value));
+        } catch (Exception ex) {
+            // onBeforeSave skips leaves the entity carries a hash for, so keeping the stale hash
+            // would save a document its hash lookups can no longer find
+            EncryptionMetrics.ENTITY_HASH_DECRYPT_FAILURES.increment();
+            throw new RuntimeException("Error decrypting value to hash", ex);
         }
     }
 
-
-
-    private static boolean isJavaLangOrPrimitive(Class<?> type) {
-        return type.isPrimitive() || type.getName().startsWith("java.");
+    /** Decrypt pass of a scalar field: the value to store, {@code value} itself if it stays as is */
+    public static String decryptField(String value, EncryptedField f, EncryptionUtil util, Pass pass) {
+        if (!util.isEncrypted(value)) return value;
+        if (pass == Pass.DECRYPT_LAZY && f.lazy()) {
+            LazyDecryption.deferred(1);
+            return value;
+        }
+        long start = EncryptionMetrics.start();
+        String decrypted = util.decrypt(value);
+        f.probes().decrypt.stop(start, value.length());
+        return decrypted;
     }
 
-    // ======== HASH PATH COLLECTION (from entity shape) ========
-
-    public static void collectHashablePaths(Object entity, String basePath, Map<String, String> out) {
-        if (entity == null) return;
-        Class<?> clazz = entity.getClass();
-
-        for (Field f : clazz.getDeclaredFields()) {
-            f.setAccessible(true);
-            final String name = f.getName();
-            final String path = basePath.isEmpty() ? name : basePath + "." + name;
+    /**
+     * Called for an encrypted field whose key is absent from the fetched Document. Ciphertext in
+     * it came from the Document under another key, so the key is wrong and the field would stay
+     * encrypted: fail instead of skipping it.
+     */
+    public static void checkNotProjected(Object value, String documentKey, EncryptionUtil util) {
+        if (value instanceof String s && util.isEncrypted(s)) {
+            throw new RuntimeException("Error decrypting field: it holds ciphertext but '" + documentKey
+                    + "' is not in the fetched document");
+        }
+    }
 
-            try {
-                Object value = f.get(entity);
-
-                if (f.isAnnotationPresent(Encrypted.class)) {
-                    Encrypted ann = f.getAnnotation(Encrypted.class);
-                    if (ann.hash()) {
-                        String hashField = ann.hashFieldName().isBlank() ? (name + "_hash") : ann.hashFieldName();
-                        // Only add once per path (LinkedHashMap in caller keeps last)
-                        out.put(path, hashField);
-                    }
-                }
+    /** An annotated List/array/Map of Strings, converted in place and timed as a whole */
+    public static void processValues(Object value, EncryptedField f, EncryptionUtil util, Pass pass) {
+        long start = EncryptionMetrics.start();
+        boolean randomized = f.randomized();
+        if (value instanceof Iterable<?> it) {
+            encryptIterableStrings(it, util, pass, randomized);
+        } else if (value.getClass().isArray()) {
+            encryptArrayStrings(value, util, pass, randomized);
+        } else if (value instanceof Map<?, ?> map) {
+            encryptMapStringValues(map, util, pass, randomized);
+        } else {
+            process(value, null, util, pass);
+        }
+        EncryptionMetrics.FieldProbes probes = f.probes();
+        (pass == Pass.ENCRYPT ? probes.encrypt : probes.decrypt).stop(start, 0);
+    }
 
-                if (value == null) continue;
-
-                if (!isJavaLangOrPrimitive(f.getType())) {
-                    collectHashablePaths(value, path, out);
-                } else if (value instanceof Iterable<?> it) {
-                    for (Object item : it) collectHashablePaths(item, path, out); // no indices; resolver will fan-out
-                } else if (value.getClass().isArray()) {
-                    int n = Array.getLength(value);
-                    for (int i = 0; i < n; i++) collectHashablePaths(Array.get(value, i), path, out);
-                } else if (value instanceof Map<?, ?> m) {
-                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) m).entrySet()) {
-                        collectHashablePaths(entry.getValue(), path, out); // resolver will iterate all map values
-                    }
-                }
+    /** A nested object, through its generated encryptor if it has one; {@code stored} as for {@link #processElements} */
+    public static void processNested(Object value, Object stored, EncryptionUtil util, Pass pass) {
+        process(value, stored instanceof Document d ? d : null, util, pass);
+    }
 
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException("Error collecting hashable paths", e);
+    /**
+     * @param stored the container as read from the Document, or null; paired with elements by
+     *               index for Lists and arrays and by key for Maps, the only orders it is sure to share
+     */
+    public static void processElements(Object container, Object stored, EncryptionUtil util, Pass pass) {
+        if (container instanceof Iterable<?> iterable) {
+            List<?> docs = container instanceof List<?> l && stored instanceof List<?> s && s.size() == l.size() ? s : null;
+            if (iterable instanceof Collection<?> c && ParallelFanOut.isLarge(c.size())) {
+                Object[] items = c.toArray();
+                ParallelFanOut.forEach(items.length, i -> process(items[i], fetchedAt(docs, i), util, pass));
+                return;
             }
+            int i = 0;
+            for (Object item : iterable) process(item, fetchedAt(docs, i++), util, pass);
+        } else if (container.getClass().isArray()) {
+            if (container.getClass().getComponentType().isPrimitive()) return;
+            Object[] items = (Object[]) container;
+            List<?> docs = stored instanceof List<?> s && s.size() == items.length ? s : null;
+            if (ParallelFanOut.isLarge(items.length)) {
+                ParallelFanOut.forEach(items.length, i -> process(items[i], fetchedAt(docs, i), util, pass));
+                return;
+            }
+            for (int i = 0; i < items.length; i++) process(items[i], fetchedAt(docs, i), util, pass);
+        } else if (container instanceof Map<?, ?> m) {
+            Document docs = stored instanceof Document d ? d : null;
+            if (ParallelFanOut.isLarge(m.size())) {
+                Map.Entry<?, ?>[] entries = m.entrySet().toArray(new Map.Entry<?, ?>[0]);
+                ParallelFanOut.forEach(entries.length, i -> process(entries[i].getValue(), fetchedAt(docs, entries[i].getKey()), util, pass));
+                return;
+            }
+            for (Map.Entry<?, ?> e : m.entrySet()) process(e.getValue(), fetchedAt(docs, e.getKey()), util, pass);
         }
     }
 
-    // ======== DOCUMENT HASH RESOLUTION (handles nested Docs, Lists, Arrays, Maps) ========
-
-    public static void resolveAndHash(Document root,
-                                      String dottedPath,
-                                      String hashFieldName,
-                                      EncryptionUtil encryptionUtil,
-                                      Function<String, String> hashFn) {
-        if (root == null) return;
-        String[] parts = dottedPath.split("\\.");
-        // recursive fan-out traversal across Document/List/Map
-        resolveRecurse(root, parts, 0, hashFieldName, encryptionUtil, hashFn);
+    /** Stored element {@code i}, or null (walk everything) when it is not a Document */
+    private static Document fetchedAt(List<?> stored, int i) {
+        return stored != null && stored.get(i) instanceof Document d ? d : null;
     }
 
-    @SuppressWarnings("unchecked")
-    private static void resolveRecurse(Object node,
-                                       String[] parts,
-                                       int idx,
-                                       String hashFieldName,
-                                       EncryptionUtil util,
-                                       Function<String, String> hashFn) {
-        if (node == null) return;
-
-        // If we encounter a List or Map before consuming 'parts[idx]', we need to fan-out
-        if (node instanceof List<?> list) {
-            for (Object el : list) resolveRecurse(el, parts, idx, hashFieldName, util, hashFn);
-            return;
-        }
-        if (node instanceof Map<?, ?> map && !(node instanceof Document)) {
-            for (Object v : map.values()) resolveRecurse(v, parts, idx, hashFieldName, util, hashFn);
-            return;
-        }
-
-        if (!(node instanceof Document doc)) return;
+    private static Document fetchedAt(Document stored, Object key) {
+        return stored != null && stored.get(String.valueOf(key)) instanceof Document d ? d : null;
+    }
 
-        if (idx == parts.length - 1) {
-            // Reached the leaf field name inside this Document (and/or inside list/map elements)
-            String leaf = parts[idx];
-            Object fieldVal = doc.get(leaf);
+    private static String convert(String s, EncryptionUtil util, Pass pass, boolean randomized) {
+        if (pass == Pass.ENCRYPT) return util.isEncrypted(s) ? util.reencrypt(s, randomized) : util.encrypt(s, randomized);
+        return util.isEncrypted(s) ? util.decrypt(s) : s;
+    }
 
-            // If the leaf itself is a List or Map, fan-out and try to find strings inside child Documents
-            if (fieldVal instanceof List<?> lfList) {
-                for (Object el : lfList) {
-                    if (el instanceof Document child) {
-                        hashInDocument(child, hashFieldName, util, hashFn, leaf /*unused here*/);
-                    } else if (el instanceof String s) {
-                        // List<String>: cannot place sibling '<leaf>_hash' per element without changing schema → skip
-                    }
-                }
-                return;
+    private static void encryptIterableStrings(Iterable<?> it, EncryptionUtil util, Pass pass, boolean randomized) {
+        if (!(it instanceof List<?>)) {
+            // only List allows in-place replacement; still descend into nested objects
+            for (Object v : it) {
+                if (!(v instanceof String)) process(v, null, util, pass);
             }
-            if (fieldVal instanceof Map<?, ?> lfMap && !(fieldVal instanceof Document)) {
-                for (Object v : ((Map<?, ?>) lfMap).values()) {
-                    if (v instanceof Document child) {
-                        hashInDocument(child, hashFieldName, util, hashFn, leaf /*unused*/);
-                    }
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Object> list = (List<Object>) it;
+        if (list instanceof RandomAccess && ParallelFanOut.isLarge(list.size())) {
+            // each index is read and written by one task only
+            ParallelFanOut.forEach(list.size(), i -> {
+                Object v = list.get(i);
+                if (v instanceof String s) {
+                    String converted = convert(s, util, pass, randomized);
+                    if (converted != s) list.set(i, converted);
+                } else {
+                    process(v, null, util, pass);
                 }
-                return;
+            });
+            return;
+        }
+        ListIterator<Object> li = list.listIterator();
+        while (li.hasNext()) {
+            Object v = li.next();
+            if (v instanceof String s) {
+                String converted = convert(s, util, pass, randomized);
+                if (converted != s) li.set(converted);
+            } else {
+                process(v, null, util, pass);
             }
+        }
+    }
 
-            // Normal case: the leaf is a String within this Document
-            if (fieldVal instanceof String s) {
-                String plaintext = util.isEncrypted(s) ? safeDecrypt(util, s) : s;
-                String computed = hashFn.apply(plaintext);
-                Object existing = doc.get(hashFieldName);
-                if (!(existing instanceof String ex && ex.equals(computed))) {
-                    doc.put(hashFieldName, computed); // idempotent and updates if value changed
-                }
-            }
+    private static void encryptArrayStrings(Object array, EncryptionUtil util, Pass pass, boolean randomized) {
+        if (array.getClass().getComponentType().isPrimitive()) return;
+        Object[] values = (Object[]) array;
+        if (ParallelFanOut.isLarge(values.length)) {
+            ParallelFanOut.forEach(values.length, i -> convertArrayElement(values, i, util, pass, randomized));
             return;
         }
+        for (int i = 0; i < values.length; i++) convertArrayElement(values, i, util, pass, randomized);
+    }
 
-        String key = parts[idx];
-        Object child = doc.get(key);
-
-        if (child == null) return;
+    private static void convertArrayElement(Object[] values, int i, EncryptionUtil util, Pass pass, boolean randomized) {
+        Object v = values[i];
+        if (v instanceof String s) {
+            values[i] = convert(s, util, pass, randomized);
+        } else {
+            process(v, null, util, pass);
+        }
+    }
 
-        if (child instanceof Document cdoc) {
-            resolveRecurse(cdoc, parts, idx + 1, hashFieldName, util, hashFn);
-        } else if (child instanceof List<?> list) {
-            for (Object el : list) resolveRecurse(el, parts, idx + 1, hashFieldName, util, hashFn);
-        } else if (child instanceof Map<?, ?> cmap && !(child instanceof Document)) {
-            for (Object v : ((Map<?, ?>) cmap).values()) resolveRecurse(v, parts, idx + 1, hashFieldName, util, hashFn);
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void encryptMapStringValues(Map<?, ?> map, EncryptionUtil util, Pass pass, boolean randomized) {
+        if (ParallelFanOut.isLarge(map.size())) {
+            // setValue on distinct entries never changes the map's structure
+            Map.Entry[] entries = map.entrySet().toArray(new Map.Entry[0]);
+            ParallelFanOut.forEach(entries.length, i -> convertMapEntry(entries[i], util, pass, randomized));
+            return;
         }
+        for (Map.Entry<?, ?> e : map.entrySet()) convertMapEntry(e, util, pass, randomized);
     }
 
-    private static void hashInDocument(Document doc,
-                                       String hashFieldName,
-                                       EncryptionUtil util,
-                                       Function<String, String> hashFn,
-                                       String leafName) {
-        // helper for exotic structures; here we expect the string already in this doc under some key
-        // Not used to look up by leafName; reserved for fan-out cases if needed later.
-        for (Map.Entry<String, Object> e : doc.entrySet()) {
-            if (e.getValue() instanceof String s) {
-                String plaintext = util.isEncrypted(s) ? safeDecrypt(util, s) : s;
-                String computed = hashFn.apply(plaintext);
-                Object existing = doc.get(hashFieldName);
-                if (!(existing instanceof String ex && ex.equals(computed))) {
-                    doc.put(hashFieldName, computed);
-                }
-                return;
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void convertMapEntry(Map.Entry e, EncryptionUtil util, Pass pass, boolean randomized) {
+        Object v = e.getValue();
+        if (v instanceof String s) {
+            String converted = convert(s, util, pass, randomized);
+            if (converted != s) {
+                e.setValue(converted); // raw type to bypass wildcard
             }
+        } else {
+            process(v, null, util, pass); // recurse
         }
     }
 
-    private static String safeDecrypt(EncryptionUtil util, String enc) {
-        try {
-            return util.decrypt(enc);
-        } catch (Exception ex) {
-            return enc; // fallback
-        }
+    // ======== DOCUMENT HASHING ========
+
+    /**
+     * Adds/updates the sibling hash fields of {@code entity}'s hashable values in its converted Document.
+     * Hashes carried by a field of the entity were already set from plaintext by the encrypt pass
+     * and are skipped here; only Document-only hash fields are computed.
+     */
+    public static void applyHashes(Object entity, Document document, EncryptionUtil encryptionUtil) {
+        if (entity == null) return;
+        HashPlan plan = HashPlan.forClass(entity.getClass());
+        if (plan.isEmpty()) return;
+        long start = EncryptionMetrics.start();
+        plan.apply(document, encryptionUtil, encryptionUtil.hasher()::storedHash);
+        if (start != EncryptionMetrics.NOT_SAMPLED) EncryptionMetrics.entity(entity.getClass()).hash.stop(start, 0);
+    }
+
+    /**
+     * Codec mode: sets every hash field of {@code document}, reading plaintext from the (unencrypted)
+     * entity in lockstep with the Document instead of decrypting the binary ciphertext.
+     */
+    public static void applyHashesFromEntity(Object entity, Document document, EncryptionUtil encryptionUtil) {
+        if (entity == null) return;
+        HashPlan plan = HashPlan.forClass(entity.getClass());
+        if (plan.targets().isEmpty()) return;
+        long start = EncryptionMetrics.start();
+        plan.applyFromEntity(entity, document, encryptionUtil, encryptionUtil.hasher()::storedHash);
+        if (start != EncryptionMetrics.NOT_SAMPLED) EncryptionMetrics.entity(entity.getClass()).hash.stop(start, 0);
     }
 }
@@ -1,65 +1,451 @@
 package com.madhav.poc.spring.mongo.util;
 
-import jakarta.annotation.PostConstruct;
-import org.springframework.beans.factory.annotation.Value;
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
 
+/**
+ * Deterministic AES/CBC field encryption with versioned keys. Version 1 is the original
+ * {@code ENC::} format keyed by the first 16 bytes of {@code encryption.secret}; later versions
+ * are written as {@code ENC:v<n>::} with an AES-256 key derived from their secret. Every
+ * configured version stays readable, so data can be re-encrypted while the application runs.
+ *
+ * <p>Fields that are never matched by ciphertext can use the randomized form instead:
+ * AES/GCM with a fresh 12-byte IV per value, written as {@code ENC:g<n>::base64(iv + ciphertext + tag)}
+ * under an AES-256 key derived from the same version's secret. Equal plaintexts then give
+ * different ciphertexts, so equality lookups on those fields go through their hash columns.
+ */
 @Component
 public class EncryptionUtil {
 
-    @Value("${encryption.secret}")
-    private String secret;
+    private static final String PREFIX = "ENC::";
+    private static final String VERSION_PREFIX = "ENC:v";
+    private static final String GCM_PREFIX = "ENC:g";
+    /** Shared start of every form; the character after it tells them apart */
+    private static final String MARKER = "ENC:";
+    private static final int FORM_INDEX = MARKER.length();
+    private static final String VERSION_SUFFIX = "::";
+    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+    /** Set on the version byte of the binary form when the value is randomized (GCM) */
+    private static final int GCM_FLAG = 0x80;
 
-    private SecretKeySpec secretKey;
-    private IvParameterSpec ivSpec;
+    private final KeyVersion[] keys; // indexed by version
+    private final KeyVersion active;
+    private final BlindIndexer blindIndexer;
+    private final Hasher hasher;
+    private final CryptoPool<CipherSlot> ciphers = new CryptoPool<>(() -> new CipherSlot(TRANSFORMATION));
+    private final CryptoPool<CipherSlot> gcmCiphers = new CryptoPool<>(() -> new CipherSlot(GCM_TRANSFORMATION));
 
-    private static final String PREFIX = "ENC::";
+    @Autowired
+    public EncryptionUtil(EncryptionProperties properties) {
+        this(properties.getSecret(), properties.getKeys(), properties.getActiveVersion(), properties.getHash());
+    }
+
+    public EncryptionUtil(String secret) {
+        this(secret, Map.of(), 1);
+    }
+
+    public EncryptionUtil(String secret, Map<Integer, String> versionedSecrets, int activeVersion) {
+        this(secret, versionedSecrets, activeVersion, new EncryptionProperties.Hash());
+    }
 
-    @PostConstruct
-    private void init() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        if (keyBytes.length < 16) {
-            throw new IllegalArgumentException("Secret key must be at least 16 bytes long");
+    public EncryptionUtil(String secret, Map<Integer, String> versionedSecrets, int activeVersion,
+                          EncryptionProperties.Hash hash) {
+        int maxVersion = Math.max(1, versionedSecrets.keySet().stream().mapToInt(Integer::intValue).max().orElse(1));
+        this.keys = new KeyVersion[maxVersion + 1];
+        this.keys[1] = KeyVersion.legacy(secret);
+        versionedSecrets.forEach((version, versionSecret) -> {
+            if (version < 2 || version > 127) {
+                throw new IllegalArgumentException("Key versions in encryption.keys must be 2..127; version 1 is encryption.secret");
+            }
+            keys[version] = KeyVersion.derived(version, versionSecret);
+        });
+        if (activeVersion < 1 || activeVersion >= keys.length || keys[activeVersion] == null) {
+            throw new IllegalArgumentException("No key configured for active version " + activeVersion);
         }
-        byte[] key16 = new byte[16];
-        System.arraycopy(keyBytes, 0, key16, 0, 16);
+        this.active = keys[activeVersion];
+        this.blindIndexer = new BlindIndexer(secret);
+        this.hasher = new Hasher(hash, secret);
+    }
+
+    /** Tokens of {@code @BlindIndex} fields, keyed from {@code encryption.secret} whatever the active version */
+    public BlindIndexer blindIndexer() {
+        return blindIndexer;
+    }
 
-        this.secretKey = new SecretKeySpec(key16, "AES");
-        this.ivSpec = new IvParameterSpec(key16); // fixed IV derived from secret (simple, deterministic)
+    /** Hash columns in the {@code encryption.hash} format */
+    public Hasher hasher() {
+        return hasher;
     }
 
     public String encrypt(String plain) {
         if (isEncrypted(plain)) return plain; // idempotent
+        return encrypt(plain, active);
+    }
+
+    /** Deterministic ({@link #encrypt(String)}) or randomized AES/GCM ciphertext of {@code plain}; idempotent. */
+    public String encrypt(String plain, boolean randomized) {
+        if (!randomized) return encrypt(plain);
+        if (isEncrypted(plain)) return plain;
+        return encryptGcm(plain, active);
+    }
+
+    /** Ciphertext of {@code plain} under every configured key, active first, for equality queries during rotation. */
+    public List<String> encryptAllVersions(String plain) {
+        List<String> out = new ArrayList<>();
+        out.add(encrypt(plain, active));
+        for (KeyVersion k : keys) {
+            if (k != null && k != active) out.add(encrypt(plain, k));
+        }
+        return out;
+    }
+
+    /** Re-encrypts a value written under an older key with the active one, keeping its form; other values are returned as is. */
+    public String reencrypt(String value) {
+        return reencrypt(value, isRandomized(value));
+    }
+
+    /** Ciphertext of {@code value} under the active key in the requested form; {@code value} itself if it already is. */
+    public String reencrypt(String value, boolean randomized) {
+        if (!isEncrypted(value) || isCurrent(value, randomized)) return value;
+        String plain = decrypt(value);
+        return randomized ? encryptGcm(plain, active) : encrypt(plain, active);
+    }
+
+    public String decrypt(String value) {
+        int version = versionOf(value);
+        if (version < 0) return value; // already plaintext
+        KeyVersion key = keyFor(version);
+        boolean gcm = value.charAt(FORM_INDEX) == 'g';
+        long start = EncryptionMetrics.start();
+        CryptoPool<CipherSlot> pool = gcm ? gcmCiphers : ciphers;
+        CipherSlot slot = pool.borrow();
         try {
-            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
-            byte[] encrypted = cipher.doFinal(plain.getBytes(StandardCharsets.UTF_8));
-            return PREFIX + Base64.getEncoder().encodeToString(encrypted);
+            // decode straight from the value's range: no substring, no intermediate byte[]
+            int from = gcm ? key.gcmPrefix.length : key.prefix.length;
+            byte[] decoded = slot.input(ByteCodec.maxDecodedLength(value.length() - from));
+            int length = ByteCodec.decodeBase64(value, from, decoded);
+            int offset = 0;
+            if (gcm) {
+                slot.cipher.init(Cipher.DECRYPT_MODE, key.gcmKey, new GCMParameterSpec(GCM_TAG_BITS, decoded, 0, GCM_IV_LENGTH));
+                offset = GCM_IV_LENGTH;
+            } else {
+                slot.cipher.init(Cipher.DECRYPT_MODE, key.secretKey, key.ivSpec);
+            }
+            byte[] out = slot.output(slot.cipher.getOutputSize(length - offset));
+            int n = slot.cipher.doFinal(decoded, offset, length - offset, out, 0);
+            return new String(out, 0, n, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new RuntimeException("Error while decrypting", e);
+        } finally {
+            pool.release(slot);
+            EncryptionMetrics.DECRYPT.stop(start, value.length());
+        }
+    }
+
+    public boolean isEncrypted(String value) {
+        return versionOf(value) >= 0;
+    }
+
+    /** True if {@code value} is encrypted with the active key */
+    public boolean isCurrent(String value) {
+        return versionOf(value) == active.version;
+    }
+
+    /** True if {@code value} is encrypted with the active key in the requested form */
+    public boolean isCurrent(String value, boolean randomized) {
+        return isCurrent(value) && isRandomized(value) == randomized;
+    }
+
+    /** True if {@code value} is in the randomized AES/GCM form */
+    public boolean isRandomized(String value) {
+        return versionOf(value) >= 0 && value.charAt(FORM_INDEX) == 'g';
+    }
+
+    public int activeVersion() {
+        return active.version;
+    }
+
+    /**
+     * Key version of an encrypted value, or -1 if it is not encrypted. Called for every String
+     * the walker visits, so plaintext is rejected on its first character and the prefix is read
+     * once, whatever its form.
+     */
+    public int versionOf(String value) {
+        if (value == null || value.length() <= FORM_INDEX || value.charAt(0) != 'E' || !value.startsWith(MARKER)) return -1;
+        char form = value.charAt(FORM_INDEX);
+        if (form == ':') return 1; // ENC::
+        if (form != 'v' && form != 'g') return -1;
+        int i = VERSION_PREFIX.length(); // same length as GCM_PREFIX
+        int version = 0;
+        while (i < value.length() && i < VERSION_PREFIX.length() + 4) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') break;
+            version = version * 10 + (c - '0');
+            i++;
+        }
+        return i > VERSION_PREFIX.length() && value.startsWith(VERSION_SUFFIX, i) ? version : -1;
+    }
+
+    // ======== BINARY FORM ========
+
+    /** Key version byte followed by the raw AES/CBC ciphertext, for BSON binary storage (no base64, no prefix) */
+    public byte[] encryptToBinary(String plain) {
+        return encryptToBinary(plain, active);
+    }
+
+    /**
+     * Binary ciphertext in the requested form. The randomized form is the key version byte with
+     * its high bit set, then the 12-byte IV, the AES/GCM ciphertext and its tag.
+     */
+    public byte[] encryptToBinary(String plain, boolean randomized) {
+        return randomized ? encryptGcmToBinary(plain, active) : encryptToBinary(plain, active);
+    }
+
+    /** Binary ciphertext of {@code plain} under every configured key, active first */
+    public List<byte[]> encryptAllVersionsToBinary(String plain) {
+        List<byte[]> out = new ArrayList<>();
+        out.add(encryptToBinary(plain, active));
+        for (KeyVersion k : keys) {
+            if (k != null && k != active) out.add(encryptToBinary(plain, k));
+        }
+        return out;
+    }
+
+    private byte[] encryptToBinary(String plain, KeyVersion key) {
+        long start = EncryptionMetrics.start();
+        CipherSlot slot = ciphers.borrow();
+        try {
+            slot.cipher.init(Cipher.ENCRYPT_MODE, key.secretKey, key.ivSpec);
+            byte[] input = slot.input(ByteCodec.maxUtf8Length(plain));
+            int length = ByteCodec.encodeUtf8(plain, input);
+            byte[] out = new byte[1 + slot.cipher.getOutputSize(length)];
+            out[0] = (byte) key.version;
+            int n = slot.cipher.doFinal(input, 0, length, out, 1);
+            return n + 1 == out.length ? out : Arrays.copyOf(out, n + 1);
         } catch (Exception e) {
             throw new RuntimeException("Error while encrypting", e);
+        } finally {
+            ciphers.release(slot);
+            EncryptionMetrics.ENCRYPT.stop(start, plain.length());
         }
     }
 
-    public String decrypt(String value) {
-        if (!isEncrypted(value)) return value; // already plaintext
+    private byte[] encryptGcmToBinary(String plain, KeyVersion key) {
+        long start = EncryptionMetrics.start();
+        CipherSlot slot = gcmCiphers.borrow();
         try {
-            String base64 = value.substring(PREFIX.length());
-            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
-            byte[] decoded = Base64.getDecoder().decode(base64);
-            return new String(cipher.doFinal(decoded), StandardCharsets.UTF_8);
+            byte[] input = slot.input(ByteCodec.maxUtf8Length(plain));
+            int length = ByteCodec.encodeUtf8(plain, input);
+            byte[] out = new byte[1 + GCM_IV_LENGTH + length + GCM_TAG_BITS / 8];
+            out[0] = (byte) (key.version | GCM_FLAG);
+            int n = slot.encryptGcm(key, input, length, out, 1);
+            return n + 1 == out.length ? out : Arrays.copyOf(out, n + 1);
+        } catch (Exception e) {
+            throw new RuntimeException("Error while encrypting", e);
+        } finally {
+            gcmCiphers.release(slot);
+            EncryptionMetrics.ENCRYPT.stop(start, plain.length());
+        }
+    }
+
+    public String decryptBinary(byte[] data) {
+        KeyVersion key = keyFor(binaryVersionOf(data));
+        boolean gcm = isRandomizedBinary(data);
+        long start = EncryptionMetrics.start();
+        CryptoPool<CipherSlot> pool = gcm ? gcmCiphers : ciphers;
+        CipherSlot slot = pool.borrow();
+        try {
+            int offset = 1;
+            if (gcm) {
+                slot.cipher.init(Cipher.DECRYPT_MODE, key.gcmKey, new GCMParameterSpec(GCM_TAG_BITS, data, 1, GCM_IV_LENGTH));
+                offset += GCM_IV_LENGTH;
+            } else {
+                slot.cipher.init(Cipher.DECRYPT_MODE, key.secretKey, key.ivSpec);
+            }
+            byte[] out = slot.output(slot.cipher.getOutputSize(data.length - offset));
+            int n = slot.cipher.doFinal(data, offset, data.length - offset, out, 0);
+            return new String(out, 0, n, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Error while decrypting", e);
+        } finally {
+            pool.release(slot);
+            EncryptionMetrics.DECRYPT.stop(start, data.length);
         }
     }
 
-    public boolean isEncrypted(String value) {
-        return value != null && value.startsWith(PREFIX);
+    public int binaryVersionOf(byte[] data) {
+        return data == null || data.length == 0 ? -1 : data[0] & ~GCM_FLAG & 0xFF;
+    }
+
+    public boolean isRandomizedBinary(byte[] data) {
+        return data != null && data.length > 0 && (data[0] & GCM_FLAG) != 0;
+    }
+
+    /** Binary ciphertext under the active key, keeping its form; {@code data} itself if it already is */
+    public byte[] reencryptBinary(byte[] data) {
+        return reencryptBinary(data, isRandomizedBinary(data));
+    }
+
+    /** Binary ciphertext under the active key in the requested form; {@code data} itself if it already is */
+    public byte[] reencryptBinary(byte[] data, boolean randomized) {
+        if (binaryVersionOf(data) == active.version && isRandomizedBinary(data) == randomized) return data;
+        return encryptToBinary(decryptBinary(data), randomized);
+    }
+
+    private KeyVersion keyFor(int version) {
+        KeyVersion key = version > 0 && version < keys.length ? keys[version] : null;
+        if (key == null) {
+            throw new IllegalStateException("No key configured for version " + version);
+        }
+        return key;
+    }
+
+    private String encrypt(String plain, KeyVersion key) {
+        long start = EncryptionMetrics.start();
+        CipherSlot slot = ciphers.borrow();
+        try {
+            slot.cipher.init(Cipher.ENCRYPT_MODE, key.secretKey, key.ivSpec);
+            byte[] input = slot.input(ByteCodec.maxUtf8Length(plain));
+            int length = ByteCodec.encodeUtf8(plain, input);
+            byte[] out = slot.output(slot.cipher.getOutputSize(length));
+            int n = slot.cipher.doFinal(input, 0, length, out, 0);
+            byte[] text = slot.text(key.prefix.length + ByteCodec.base64Length(n));
+            return ByteCodec.prefixedBase64(key.prefix, out, 0, n, text);
+        } catch (Exception e) {
+            throw new RuntimeException("Error while encrypting", e);
+        } finally {
+            ciphers.release(slot);
+            EncryptionMetrics.ENCRYPT.stop(start, plain.length());
+        }
+    }
+
+    private String encryptGcm(String plain, KeyVersion key) {
+        long start = EncryptionMetrics.start();
+        CipherSlot slot = gcmCiphers.borrow();
+        try {
+            byte[] input = slot.input(ByteCodec.maxUtf8Length(plain));
+            int length = ByteCodec.encodeUtf8(plain, input);
+            byte[] out = slot.output(GCM_IV_LENGTH + length + GCM_TAG_BITS / 8);
+            int n = slot.encryptGcm(key, input, length, out, 0);
+            byte[] text = slot.text(key.gcmPrefix.length + ByteCodec.base64Length(n));
+            return ByteCodec.prefixedBase64(key.gcmPrefix, out, 0, n, text);
+        } catch (Exception e) {
+            throw new RuntimeException("Error while encrypting", e);
+        } finally {
+            gcmCiphers.release(slot);
+            EncryptionMetrics.ENCRYPT.stop(start, plain.length());
+        }
+    }
+
+    private static final class KeyVersion {
+        private final int version;
+        private final byte[] prefix;
+        private final byte[] gcmPrefix;
+        private final SecretKeySpec secretKey;
+        private final IvParameterSpec ivSpec;
+        private final SecretKeySpec gcmKey;
+
+        private KeyVersion(int version, String prefix, byte[] key, byte[] iv, String secret) {
+            this.version = version;
+            this.prefix = prefix.getBytes(StandardCharsets.US_ASCII);
+            this.gcmPrefix = (GCM_PREFIX + version + VERSION_SUFFIX).getBytes(StandardCharsets.US_ASCII);
+            this.secretKey = new SecretKeySpec(key, "AES");
+            this.ivSpec = new IvParameterSpec(iv);
+            this.gcmKey = new SecretKeySpec(sha256(("gcm:" + secret).getBytes(StandardCharsets.UTF_8)), "AES");
+        }
+
+        /** AES-256 key of the randomized form: SHA-256("gcm:" + secret), never shared with the CBC key */
+        private static byte[] sha256(byte[] input) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(input);
+            } catch (Exception e) {
+                throw new IllegalStateException("Error deriving key", e);
+            }
+        }
+
+        /** Original scheme: first 16 bytes of the secret as both key and IV */
+        private static KeyVersion legacy(String secret) {
+            byte[] keyBytes = secret == null ? new byte[0] : secret.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length < 16) {
+                throw new IllegalArgumentException("Secret key must be at least 16 bytes long");
+            }
+            byte[] key16 = new byte[16];
+            System.arraycopy(keyBytes, 0, key16, 0, 16);
+            return new KeyVersion(1, PREFIX, key16, key16, secret); // fixed IV derived from secret (simple, deterministic)
+        }
+
+        /** AES-256 key = SHA-256(secret); fixed IV = first 16 bytes of SHA-256("iv:" + secret), still deterministic */
+        private static KeyVersion derived(int version, String secret) {
+            if (secret == null || secret.getBytes(StandardCharsets.UTF_8).length < 16) {
+                throw new IllegalArgumentException("Secret for key version " + version + " must be at least 16 bytes long");
+            }
+            try {
+                byte[] key = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+                byte[] iv = Arrays.copyOf(MessageDigest.getInstance("SHA-256")
+                        .digest(("iv:" + secret).getBytes(StandardCharsets.UTF_8)), 16);
+                return new KeyVersion(version, VERSION_PREFIX + version + VERSION_SUFFIX, key, iv, secret);
+            } catch (Exception e) {
+                throw new IllegalStateException("Error deriving key version " + version, e);
+            }
+        }
+    }
+
+    /**
+     * Pooled cipher with scratch buffers that grow to the largest value seen. GCM slots also own
+     * the random source for their IVs, so encrypting threads never contend on a shared one.
+     */
+    private static final class CipherSlot {
+        private final Cipher cipher;
+        private SecureRandom random;
+        private final byte[] iv = new byte[GCM_IV_LENGTH];
+        private byte[] input = new byte[64];
+        private byte[] output = new byte[64];
+        private byte[] text = new byte[128];
+
+        private CipherSlot(String transformation) {
+            try {
+                this.cipher = Cipher.getInstance(transformation);
+            } catch (Exception e) {
+                throw new RuntimeException("Error creating cipher", e);
+            }
+        }
+
+        /** Writes a fresh IV then the ciphertext and tag of {@code input[0, length)} at {@code out[off]}; returns the bytes written. */
+        private int encryptGcm(KeyVersion key, byte[] input, int length, byte[] out, int off) throws Exception {
+            if (random == null) random = new SecureRandom();
+            random.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, key.gcmKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            System.arraycopy(iv, 0, out, off, GCM_IV_LENGTH);
+            return GCM_IV_LENGTH + cipher.doFinal(input, 0, length, out, off + GCM_IV_LENGTH);
+        }
+
+        /** Plaintext bytes to encrypt, or ciphertext bytes to decrypt */
+        private byte[] input(int size) {
+            if (input.length < size) input = new byte[size];
+            return input;
+        }
+
+        private byte[] output(int size) {
+            if (output.length < size) output = new byte[size];
+            return output;
+        }
+
+        private byte[] text(int size) {
+            if (text.length < size) text = new byte[size];
+            return text;
+        }
     }
 }
@@ -0,0 +1,22 @@
+package com.madhav.poc.spring.mongo.util;
+
+import com.madhav.poc.spring.mongo.util.EncryptionReflectionUtils.Pass;
+import org.bson.Document;
+
+/**
+ * Encrypts, hashes and decrypts the {@link Encrypted} fields of one class through its getters and
+ * setters. Implementations are generated at compile time by {@code EncryptorProcessor} as
+ * {@code <Class>_Encryptor} and found through {@link EntityEncryptors}; classes without one are
+ * walked by reflection.
+ */
+public interface EntityEncryptor<T> {
+
+    Class<T> type();
+
+    /**
+     * One pass over {@code entity}, with the same semantics as the reflective walker.
+     *
+     * @param fetched the Document {@code entity} was read from, or null to visit every field
+     */
+    void process(T entity, Document fetched, EncryptionUtil util, Pass pass);
+}
@@ -0,0 +1,77 @@
+package com.madhav.poc.spring.mongo.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+
+/**
+ * Registry of the {@link EntityEncryptor}s generated at compile time, listed by the processor in
+ * {@code META-INF/services}. Lookups are by exact class: a subclass without its own encryptor is
+ * walked by reflection, as is every class when generated encryptors are disabled.
+ */
+@Slf4j
+public final class EntityEncryptors {
+
+    private static final Map<Class<?>, EntityEncryptor<?>> GENERATED = load();
+
+    private static final ClassValue<EntityEncryptor<?>> BY_CLASS = new ClassValue<>() {
+        @Override
+        protected EntityEncryptor<?> computeValue(Class<?> type) {
+            return GENERATED.get(type);
+        }
+    };
+
+    private static volatile boolean enabled = true;
+
+    private EntityEncryptors() {}
+
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /** The generated encryptor of exactly {@code type}, or null */
+    public static EntityEncryptor<?> forClass(Class<?> type) {
+        return enabled ? BY_CLASS.get(type) : null;
+    }
+
+    /** Classes with a generated encryptor on the classpath */
+    public static Set<Class<?>> generatedTypes() {
+        return GENERATED.keySet();
+    }
+
+    /**
+     * Raw access to a private field for generated code, used for {@code lazy} fields whose getter
+     * would decrypt them.
+     *
+     * @param lookup the generated class's own lookup, in the same package as {@code owner}
+     */
+    public static VarHandle rawField(MethodHandles.Lookup lookup, Class<?> owner, String name, Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(owner, lookup).findVarHandle(owner, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Cannot access field " + name + " of " + owner.getName(), e);
+        }
+    }
+
+    private static Map<Class<?>, EntityEncryptor<?>> load() {
+        Map<Class<?>, EntityEncryptor<?>> out = new HashMap<>();
+        List<String> stale = new ArrayList<>();
+        Iterator<EntityEncryptor> it = ServiceLoader.load(EntityEncryptor.class, EntityEncryptors.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!it.hasNext()) break;
+                EntityEncryptor<?> encryptor = it.next();
+                out.put(encryptor.type(), encryptor);
+            } catch (ServiceConfigurationError e) {
+                stale.add(e.getMessage());
+            }
+        }
+        if (!stale.isEmpty()) {
+            log.warn("Skipped {} generated encryptor(s) listed in META-INF/services but not loadable; "
+                    + "rebuilding removes them: {}", stale.size(), stale);
+        }
+        return Map.copyOf(out);
+    }
+}
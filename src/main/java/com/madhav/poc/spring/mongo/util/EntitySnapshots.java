@@ -0,0 +1,49 @@
+package com.madhav.poc.spring.mongo.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import org.bson.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * What each loaded entity looked like in MongoDB, for {@code PartialUpdateService}: the fetched
+ * Document and the values the decrypt pass replaced ({@link DirtyFields#decryptedValues}).
+ * Entries are weakly keyed by entity identity, so they go away with the entity. When
+ * {@code encryption.dirty-tracking.enabled} is false nothing is kept.
+ */
+@Component
+public class EntitySnapshots {
+
+    public record Snapshot(Document document, Map<String, String> decrypted) {}
+
+    private final Cache<Object, Snapshot> snapshots;
+
+    public EntitySnapshots(EncryptionProperties properties) {
+        EncryptionProperties.DirtyTracking settings = properties.getDirtyTracking();
+        this.snapshots = settings.isEnabled()
+                ? Caffeine.newBuilder().weakKeys().maximumSize(settings.getMaximumSize()).build()
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return snapshots != null;
+    }
+
+    /** Remembers {@code document} as the stored state of {@code entity}, after it was decrypted */
+    public void track(Object entity, Document document) {
+        if (snapshots == null || document == null) return;
+        snapshots.put(entity, new Snapshot(document, DirtyFields.decryptedValues(entity, document)));
+    }
+
+    /** The stored state of {@code entity}, or null if it was not loaded with tracking on or is being saved in full */
+    public Snapshot get(Object entity) {
+        return snapshots == null ? null : snapshots.getIfPresent(entity);
+    }
+
+    public void forget(Object entity) {
+        if (snapshots != null) snapshots.invalidate(entity);
+    }
+}
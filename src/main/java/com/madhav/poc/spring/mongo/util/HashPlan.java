@@ -0,0 +1,378 @@
+package com.madhav.poc.spring.mongo.util;
+
+import org.bson.Document;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Precompiled per-class plan of where {@code @Encrypted(hash = true)} values live in the
+ * converted BSON Document. It is derived once from declared field types and generic
+ * parameters (a {@code List<Bank>} fans out over list elements, a {@code Map<String, Bank>}
+ * over the embedded document's values) and applied in a single pass over the Document,
+ * so the work per save depends on the data, not on re-discovering the shape. Keys and paths are
+ * the stored names, resolved through {@link EncryptionMetadata#storedName}, so {@code @Field}
+ * renames and the configured {@code FieldNamingStrategy} apply to saves, queries and indexes alike.
+ *
+ * <p>Hashes of String fields whose class declares the hash field itself are set from
+ * plaintext during the encrypt pass and only kept in {@link #targets()}; the plan applies
+ * the rest. Fields declared with an abstract or interface type cannot be planned
+ * statically and are not hashed.
+ *
+ * <p>The tokens of {@link BlindIndex} fields are Document-only as well and are written by the
+ * same pass, as computed by the encrypt pass ({@link BlindIndexer#attached}); a value with no
+ * tokens attached keeps whatever is stored rather than being decrypted or indexed as ciphertext.
+ */
+public final class HashPlan {
+
+    private static final ClassValue<HashPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected HashPlan computeValue(Class<?> type) {
+            List<Target> targets = new ArrayList<>();
+            List<BlindTarget> blindTargets = new ArrayList<>();
+            Node root = compile(type, "", "", "", false, new HashMap<>(), targets, blindTargets);
+            return new HashPlan(root == null || root.isEmpty(false) ? null : root,
+                    root == null || root.isEmpty(true) ? null : root, List.copyOf(targets), List.copyOf(blindTargets));
+        }
+    };
+
+    private final Node root;
+    private final Node lockstepRoot;
+    private final List<Target> targets;
+    private final List<BlindTarget> blindTargets;
+
+    private HashPlan(Node root, Node lockstepRoot, List<Target> targets, List<BlindTarget> blindTargets) {
+        this.root = root;
+        this.lockstepRoot = lockstepRoot;
+        this.targets = targets;
+        this.blindTargets = blindTargets;
+    }
+
+    public static HashPlan forClass(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /** True if there are no Document-only hash fields or blind indexes to apply */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /** Every hashed value: plaintext path, hash path, whether the path crosses an array and how to index it. */
+    public List<Target> targets() {
+        return targets;
+    }
+
+    /**
+     * @param path     dotted path of the encrypted value, e.g. {@code agent.lead.bankList.phone}
+     * @param hashPath dotted path of its hash sibling, e.g. {@code agent.lead.bankList.phoneHash}
+     * @param multikey true if the path goes through a List/array (a multikey index in MongoDB)
+     * @param indexable false if the path goes through a Map, whose keys are data and cannot be indexed by path
+     * @param unique    {@code @Encrypted(uniqueHash = true)}
+     * @param indexWith absolute paths of {@code @Encrypted(hashIndexWith)} siblings, after the hash in a compound index
+     */
+    public record Target(String path, String hashPath, boolean multikey, boolean indexable,
+                         boolean unique, List<String> indexWith) {}
+
+    /** Every {@link BlindIndex} field: plaintext path, path of its token array and its settings */
+    public List<BlindTarget> blindTargets() {
+        return blindTargets;
+    }
+
+    /**
+     * @param path      dotted path of the encrypted value, e.g. {@code agent.lead.user.mobileNumber}
+     * @param fieldPath the same path in Java field names, as the entity is walked
+     * @param indexPath dotted path of its token array, e.g. {@code agent.lead.user.mobileNumberIndex}
+     * @param indexable false if the path goes through a Map
+     */
+    public record BlindTarget(String path, String fieldPath, String indexPath, boolean indexable, BlindIndex spec) {}
+
+    public void apply(Document document, EncryptionUtil util, Function<String, Object> hashFn) {
+        if (root != null && document != null) root.apply(document, util, hashFn);
+    }
+
+    /**
+     * Hashes every planned value, including those an entity field carries, reading plaintext from
+     * {@code entity} while writing hashes into the {@code document} it was converted to. For codec
+     * mode, where the Document holds binary ciphertext and the entity is never encrypted in place.
+     */
+    public void applyFromEntity(Object entity, Document document, EncryptionUtil util, Function<String, Object> hashFn) {
+        if (lockstepRoot != null && entity != null && document != null) {
+            lockstepRoot.applyFromEntity(entity, document, util, hashFn);
+        }
+    }
+
+    // ======== PLAN TREE ========
+
+    private enum FanOut { NONE, LIST, MAP }
+
+    private static final class Node {
+        // assigned once compiled; a recursive type refers back to its node while it is being built
+        private String[] leafKeys;
+        private String[] hashFields; // null where the leaf only has a blind index
+        private boolean[] carried;  // hash carried by an entity field: set by the encrypt pass, skipped by apply
+        private BlindIndex[] blindIndexes; // null where the leaf has no blind index
+        private String[] blindFields;
+        private MethodHandle[] leafGetters;
+        private String[] childKeys;
+        private FanOut[] fanOuts;
+        private Node[] children;
+        private MethodHandle[] childGetters;
+        private boolean hasDocumentOnly; // some leaf under this node is not carried
+
+        private boolean isEmpty(boolean includeCarried) {
+            return includeCarried ? leafKeys.length == 0 && childKeys.length == 0 : !hasDocumentOnly;
+        }
+
+        private void apply(Document doc, EncryptionUtil util, Function<String, Object> hashFn) {
+            for (int i = 0; i < leafKeys.length; i++) {
+                if (hashFields[i] != null && !carried[i]) hashLeaf(doc, leafKeys[i], hashFields[i], util, hashFn);
+                if (blindIndexes[i] != null && doc.get(leafKeys[i]) instanceof String s) {
+                    putTokens(doc, blindFields[i], s, blindIndexes[i], util);
+                }
+            }
+            for (int i = 0; i < childKeys.length; i++) {
+                if (!children[i].hasDocumentOnly) continue;
+                Object child = doc.get(childKeys[i]);
+                if (child == null) continue;
+                if (fanOuts[i] == FanOut.MAP && child instanceof Document map) {
+                    for (Object v : map.values()) {
+                        if (v instanceof Document d) children[i].apply(d, util, hashFn);
+                    }
+                } else if (child instanceof Document d) {
+                    children[i].apply(d, util, hashFn);
+                } else if (child instanceof List<?> list) {
+                    for (Object el : list) {
+                        if (el instanceof Document d) children[i].apply(d, util, hashFn);
+                    }
+                }
+            }
+        }
+
+        private void applyFromEntity(Object entity, Document doc, EncryptionUtil util, Function<String, Object> hashFn) {
+            for (int i = 0; i < leafKeys.length; i++) {
+                if (read(leafGetters[i], entity) instanceof String s) {
+                    if (hashFields[i] != null) {
+                        putIfChanged(doc, hashFields[i], hashFn.apply(util.isEncrypted(s) ? safeDecrypt(util, s) : s));
+                    }
+                    if (blindIndexes[i] != null) putTokens(doc, blindFields[i], s, blindIndexes[i], util);
+                } else if (hashFields[i] != null) {
+                    hashLeaf(doc, leafKeys[i], hashFields[i], util, hashFn);
+                }
+            }
+            for (int i = 0; i < childKeys.length; i++) {
+                Object value = read(childGetters[i], entity);
+                Object child = doc.get(childKeys[i]);
+                if (value == null || child == null) continue;
+                // the converter writes elements and map entries in iteration order, so both sides line up
+                Iterator<?> values = fanOuts[i] == FanOut.MAP && value instanceof Map<?, ?> m ? m.values().iterator()
+                        : value instanceof Iterable<?> it ? it.iterator()
+                        : value instanceof Object[] arr ? Arrays.asList(arr).iterator()
+                        : null;
+                Iterator<?> docs = child instanceof Document d && fanOuts[i] == FanOut.MAP ? d.values().iterator()
+                        : child instanceof List<?> list ? list.iterator()
+                        : null;
+                if (fanOuts[i] == FanOut.NONE) {
+                    if (child instanceof Document d) children[i].applyFromEntity(value, d, util, hashFn);
+                } else if (values != null && docs != null) {
+                    while (values.hasNext() && docs.hasNext()) {
+                        Object v = values.next();
+                        if (docs.next() instanceof Document d && v != null) children[i].applyFromEntity(v, d, util, hashFn);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Object read(MethodHandle getter, Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Throwable t) {
+            throw new RuntimeException("Error reading field for hashing", t);
+        }
+    }
+
+    private static void hashLeaf(Document doc, String leaf, String hashFieldName,
+                                 EncryptionUtil util, Function<String, Object> hashFn) {
+        Object fieldVal = doc.get(leaf);
+
+        if (fieldVal instanceof String s) {
+            String plaintext = util.isEncrypted(s) ? safeDecrypt(util, s) : s;
+            putIfChanged(doc, hashFieldName, hashFn.apply(plaintext));
+            return;
+        }
+
+        // Annotated List/Map of objects: hash the first string inside each child Document.
+        // List<String> cannot carry a sibling hash per element without changing schema, so it is skipped.
+        Collection<?> children = fieldVal instanceof List<?> list ? list
+                : fieldVal instanceof Document map ? map.values() : List.of();
+        for (Object el : children) {
+            if (!(el instanceof Document child)) continue;
+            for (Object v : child.values()) {
+                if (v instanceof String s) {
+                    String plaintext = util.isEncrypted(s) ? safeDecrypt(util, s) : s;
+                    putIfChanged(child, hashFieldName, hashFn.apply(plaintext));
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Tokens of plaintext {@code value}, or those the encrypt pass attached to ciphertext {@code value} */
+    private static void putTokens(Document doc, String blindField, String value, BlindIndex spec, EncryptionUtil util) {
+        List<String> tokens = util.isEncrypted(value) ? util.blindIndexer().attached(value)
+                : util.blindIndexer().tokens(value, spec);
+        if (tokens != null) putIfChanged(doc, blindField, tokens);
+    }
+
+    private static void putIfChanged(Document doc, String hashFieldName, Object computed) {
+        Object existing = doc.get(hashFieldName);
+        if (!computed.equals(existing)) {
+            doc.put(hashFieldName, computed); // idempotent and updates if value changed
+        }
+    }
+
+    private static String safeDecrypt(EncryptionUtil util, String enc) {
+        try {
+            return util.decrypt(enc);
+        } catch (Exception ex) {
+            EncryptionMetrics.HASH_PLAN_DECRYPT_FAILURES.increment();
+            return enc; // fallback
+        }
+    }
+
+    // ======== COMPILATION ========
+
+    private static Node compile(Class<?> type, String basePath, String fieldBase, String multikeyPrefix, boolean underMap,
+                                Map<Class<?>, Node> inProgress, List<Target> targets, List<BlindTarget> blindTargets) {
+        if (EncryptionMetadata.isLeafType(type) || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        Node recursive = inProgress.get(type);
+        if (recursive != null) return recursive; // same relative layout; targets were recorded one level up
+
+        Node node = new Node();
+        inProgress.put(type, node);
+
+        List<String> leafKeys = new ArrayList<>();
+        List<String> hashFields = new ArrayList<>();
+        List<Boolean> carried = new ArrayList<>();
+        List<BlindIndex> blindIndexes = new ArrayList<>();
+        List<String> blindFields = new ArrayList<>();
+        List<MethodHandle> leafGetters = new ArrayList<>();
+        List<String> childKeys = new ArrayList<>();
+        List<FanOut> fanOuts = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        List<MethodHandle> childGetters = new ArrayList<>();
+        boolean hasDocumentOnly = false;
+
+        for (Field f : type.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) continue;
+            String name = f.getName();
+            String key = EncryptionMetadata.storedName(type, name);
+            String path = basePath.isEmpty() ? key : basePath + "." + key;
+            String fieldPath = fieldBase.isEmpty() ? name : fieldBase + "." + name;
+
+            Encrypted ann = f.getAnnotation(Encrypted.class);
+            if (ann != null) {
+                boolean blind = f.getType() == String.class && BlindIndexer.isConfigured(ann.blindIndex());
+                if (!ann.hash() && !blind) continue;
+                leafKeys.add(key);
+                leafGetters.add(EncryptionMetadata.getter(f));
+                if (ann.hash()) {
+                    String hashFieldName = ann.hashFieldName().isBlank() ? (name + "_hash") : ann.hashFieldName();
+                    boolean entityCarriesHash = f.getType() == String.class
+                            && EncryptionMetadata.hashSibling(type, hashFieldName) != null;
+                    String hashField = EncryptionMetadata.storedName(type, hashFieldName);
+                    hashFields.add(hashField);
+                    carried.add(entityCarriesHash);
+                    hasDocumentOnly |= !entityCarriesHash;
+                    String hashPath = basePath.isEmpty() ? hashField : basePath + "." + hashField;
+                    List<String> indexWith = Arrays.stream(ann.hashIndexWith())
+                            .map(sibling -> EncryptionMetadata.storedName(type, sibling))
+                            .map(sibling -> basePath.isEmpty() ? sibling : basePath + "." + sibling)
+                            .toList();
+                    targets.add(new Target(path, hashPath, !multikeyPrefix.isEmpty(), !underMap,
+                            ann.uniqueHash(), indexWith));
+                } else {
+                    hashFields.add(null);
+                    carried.add(false);
+                }
+                if (blind) {
+                    BlindIndex spec = ann.blindIndex();
+                    String blindField = spec.fieldName().isBlank() ? (name + "_bidx") : spec.fieldName();
+                    blindIndexes.add(spec);
+                    blindFields.add(blindField);
+                    hasDocumentOnly = true;
+                    String indexPath = basePath.isEmpty() ? blindField : basePath + "." + blindField;
+                    blindTargets.add(new BlindTarget(path, fieldPath, indexPath, !underMap, spec));
+                } else {
+                    blindIndexes.add(null);
+                    blindFields.add(null);
+                }
+                continue;
+            }
+
+            Class<?> ft = f.getType();
+            FanOut fanOut;
+            Class<?> element;
+            if (ft.isArray() || Iterable.class.isAssignableFrom(ft)) {
+                fanOut = FanOut.LIST;
+                element = elementClass(f.getGenericType(), false);
+            } else if (Map.class.isAssignableFrom(ft)) {
+                fanOut = FanOut.MAP;
+                element = elementClass(f.getGenericType(), true);
+            } else {
+                fanOut = FanOut.NONE;
+                element = ft;
+            }
+            if (element == null) continue;
+
+            String childMultikey = fanOut == FanOut.LIST ? path : multikeyPrefix;
+            Node child = compile(element, path, fieldPath, childMultikey, underMap || fanOut == FanOut.MAP,
+                    inProgress, targets, blindTargets);
+            if (child != null) {
+                childKeys.add(key);
+                fanOuts.add(fanOut);
+                children.add(child);
+                childGetters.add(EncryptionMetadata.getter(f));
+                // a recursive reference is still being built; assume it may hold Document-only hashes
+                hasDocumentOnly |= child.leafKeys == null || child.hasDocumentOnly;
+            }
+        }
+
+        inProgress.remove(type);
+        node.leafKeys = leafKeys.toArray(new String[0]);
+        node.hashFields = hashFields.toArray(new String[0]);
+        node.carried = new boolean[carried.size()];
+        for (int i = 0; i < node.carried.length; i++) node.carried[i] = carried.get(i);
+        node.blindIndexes = blindIndexes.toArray(new BlindIndex[0]);
+        node.blindFields = blindFields.toArray(new String[0]);
+        node.leafGetters = leafGetters.toArray(new MethodHandle[0]);
+        node.childKeys = childKeys.toArray(new String[0]);
+        node.fanOuts = fanOuts.toArray(new FanOut[0]);
+        node.children = children.toArray(new Node[0]);
+        node.childGetters = childGetters.toArray(new MethodHandle[0]);
+        node.hasDocumentOnly = hasDocumentOnly;
+        return leafKeys.isEmpty() && childKeys.isEmpty() ? null : node;
+    }
+
+    private static Class<?> elementClass(Type type, boolean mapValue) {
+        if (type instanceof Class<?> c) return c.isArray() ? c.getComponentType() : null;
+        if (type instanceof GenericArrayType ga) return erasure(ga.getGenericComponentType());
+        if (type instanceof ParameterizedType pt) {
+            Type[] args = pt.getActualTypeArguments();
+            return erasure(args[mapValue ? args.length - 1 : 0]);
+        }
+        return null;
+    }
+
+    private static Class<?> erasure(Type type) {
+        if (type instanceof Class<?> c) return c;
+        if (type instanceof ParameterizedType pt) return (Class<?>) pt.getRawType();
+        if (type instanceof WildcardType wt) return erasure(wt.getUpperBounds()[0]);
+        if (type instanceof TypeVariable<?> tv) return erasure(tv.getBounds()[0]);
+        return null;
+    }
+}
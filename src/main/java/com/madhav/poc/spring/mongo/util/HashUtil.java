@@ -2,27 +2,56 @@ package com.madhav.poc.spring.mongo.util;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.util.Base64;
 
 public class HashUtil {
 
     private static final String HASH_PREFIX = "HASH::";
+    private static final byte[] HASH_PREFIX_BYTES = HASH_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final int DIGEST_LENGTH = 32;
+
+    private static final CryptoPool<DigestSlot> DIGESTS = new CryptoPool<>(DigestSlot::new);
 
     private HashUtil() {}
 
     public static String sha256Hex(String input) {
         if (isHashed(input)) return input; // idempotent
+        long start = EncryptionMetrics.start();
+        DigestSlot slot = DIGESTS.borrow();
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            String base64 = Base64.getEncoder().encodeToString(hashBytes);
-            return HASH_PREFIX + base64;
+            byte[] utf8 = slot.input(ByteCodec.maxUtf8Length(input));
+            slot.digest.update(utf8, 0, ByteCodec.encodeUtf8(input, utf8));
+            slot.digest.digest(slot.hash, 0, DIGEST_LENGTH);
+            return ByteCodec.prefixedBase64(HASH_PREFIX_BYTES, slot.hash, 0, DIGEST_LENGTH, slot.text);
         } catch (Exception e) {
+            slot.digest.reset();
             throw new RuntimeException("Error generating SHA-256 hash", e);
+        } finally {
+            DIGESTS.release(slot);
+            EncryptionMetrics.SHA256.stop(start, input.length());
         }
     }
 
     public static boolean isHashed(String value) {
         return value != null && value.startsWith(HASH_PREFIX);
     }
+
+    private static final class DigestSlot {
+        private final MessageDigest digest;
+        private final byte[] hash = new byte[DIGEST_LENGTH];
+        private final byte[] text = new byte[HASH_PREFIX_BYTES.length + ByteCodec.base64Length(DIGEST_LENGTH)];
+        private byte[] input = new byte[64];
+
+        private DigestSlot() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (Exception e) {
+                throw new RuntimeException("Error creating SHA-256 digest", e);
+            }
+        }
+
+        private byte[] input(int size) {
+            if (input.length < size) input = new byte[size];
+            return input;
+        }
+    }
 }
@@ -0,0 +1,159 @@
+package com.madhav.poc.spring.mongo.util;
+
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import org.bson.types.Binary;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Values of hash columns in the format {@code encryption.hash} configures. {@code SHA256} is the
+ * original {@code HASH::} string from {@link HashUtil}. {@code HMAC_SHA256} is keyed, so the
+ * column cannot be matched against a dictionary of hashed values without the key, and is
+ * truncated to {@code length} bytes. Entities carry it as an {@code HMAC::base64} String; in
+ * MongoDB it is stored as BSON binary of subtype {@value #SUBTYPE} when {@code binary} is set,
+ * 16 bytes plus a 5-byte header instead of a 50-character string.
+ */
+public final class Hasher {
+
+    /** User-defined binary subtype of keyed hashes; 0x80 is taken by codec-mode ciphertext */
+    public static final byte SUBTYPE = (byte) 0x81;
+
+    private static final String HMAC = "HmacSHA256";
+    private static final String KEYED_PREFIX = "HMAC::";
+    private static final byte[] KEYED_PREFIX_BYTES = KEYED_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final int MAC_LENGTH = 32;
+
+    private final boolean keyed;
+    private final boolean binary;
+    private final boolean legacyReads;
+    private final int length;
+    private final SecretKeySpec key;
+    private final CryptoPool<MacSlot> macs = new CryptoPool<>(this::newSlot);
+
+    Hasher(EncryptionProperties.Hash settings, String secret) {
+        this.keyed = settings.getFormat() == EncryptionProperties.Hash.Format.HMAC_SHA256;
+        this.binary = settings.isBinary();
+        this.legacyReads = settings.isLegacyReads();
+        this.length = settings.getLength();
+        if (keyed && (length < 8 || length > MAC_LENGTH)) {
+            throw new IllegalArgumentException("encryption.hash.length must be 8..32 bytes, was " + length);
+        }
+        String keySource = settings.getKey() == null || settings.getKey().isBlank() ? "hash:" + secret : settings.getKey();
+        try {
+            this.key = new SecretKeySpec(MessageDigest.getInstance("SHA-256")
+                    .digest(keySource.getBytes(StandardCharsets.UTF_8)), HMAC);
+        } catch (Exception e) {
+            throw new IllegalStateException("Error deriving hash key", e);
+        }
+    }
+
+    /** Hash of {@code input} as an entity carries it; a value that is already a hash is returned as is */
+    public String hash(String input) {
+        if (isHashed(input)) return input; // idempotent
+        if (!keyed) return HashUtil.sha256Hex(input);
+        long start = EncryptionMetrics.start();
+        MacSlot slot = macs.borrow();
+        try {
+            byte[] utf8 = slot.input(ByteCodec.maxUtf8Length(input));
+            slot.mac.update(utf8, 0, ByteCodec.encodeUtf8(input, utf8));
+            slot.mac.doFinal(slot.hash, 0);
+            return ByteCodec.prefixedBase64(KEYED_PREFIX_BYTES, slot.hash, 0, length, slot.text);
+        } catch (Exception e) {
+            slot.mac.reset();
+            throw new RuntimeException("Error generating HMAC-SHA256 hash", e);
+        } finally {
+            macs.release(slot);
+            EncryptionMetrics.SHA256.stop(start, input.length());
+        }
+    }
+
+    /** The value written to MongoDB for a hash from {@link #hash}: BSON binary for keyed hashes if configured */
+    public Object stored(String hash) {
+        if (!binary || hash == null || !hash.startsWith(KEYED_PREFIX)) return hash;
+        byte[] bytes = new byte[ByteCodec.maxDecodedLength(hash.length() - KEYED_PREFIX.length())];
+        int n = ByteCodec.decodeBase64(hash, KEYED_PREFIX.length(), bytes);
+        return new Binary(SUBTYPE, n == bytes.length ? bytes : Arrays.copyOf(bytes, n));
+    }
+
+    /** {@code stored(hash(plain))} */
+    public Object storedHash(String plain) {
+        return stored(hash(plain));
+    }
+
+    /** A stored hash as an entity carries it: binary back to its {@code HMAC::} string, anything else unchanged */
+    public Object fromStored(Object value) {
+        if (!(value instanceof Binary b) || b.getType() != SUBTYPE) return value;
+        byte[] data = b.getData();
+        byte[] text = new byte[KEYED_PREFIX_BYTES.length + ByteCodec.base64Length(data.length)];
+        return ByteCodec.prefixedBase64(KEYED_PREFIX_BYTES, data, 0, data.length, text);
+    }
+
+    /**
+     * Every stored value a document matching {@code plain} may hold, for a {@code $in}: the
+     * configured format, plus the {@code HASH::} string while {@code legacy-reads} is on.
+     */
+    public List<Object> queryForms(String plain) {
+        Object current = storedHash(plain);
+        if (!keyed || !legacyReads) return List.of(current);
+        return List.of(current, HashUtil.sha256Hex(plain));
+    }
+
+    /** A hash in either format */
+    public boolean isHashed(String value) {
+        return HashUtil.isHashed(value) || (value != null && value.startsWith(KEYED_PREFIX));
+    }
+
+    /** A hash an entity carries in the configured format and length */
+    public boolean isCurrent(String value) {
+        if (!keyed) return HashUtil.isHashed(value);
+        return value != null && value.startsWith(KEYED_PREFIX)
+                && value.length() == KEYED_PREFIX.length() + ByteCodec.base64Length(length);
+    }
+
+    /** A stored hash column value that is already what {@link #storedHash} writes */
+    public boolean isCurrentStored(Object value) {
+        if (value instanceof Binary b) return keyed && binary && b.getType() == SUBTYPE && b.length() == length;
+        return value instanceof String s && (keyed ? !binary && isCurrent(s) : HashUtil.isHashed(s));
+    }
+
+    /** Whether stored hashes are BSON binary, so entity-carried hash columns need {@code HashColumnConverter} */
+    public boolean storesBinary() {
+        return keyed && binary;
+    }
+
+    /** Name of the format, for migration job names: e.g. {@code hmac-sha256-16-binary} */
+    public String describe() {
+        return keyed ? "hmac-sha256-" + length + (binary ? "-binary" : "-string") : "sha256";
+    }
+
+    private MacSlot newSlot() {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return new MacSlot(mac);
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating " + HMAC, e);
+        }
+    }
+
+    private static final class MacSlot {
+        private final Mac mac;
+        private final byte[] hash = new byte[MAC_LENGTH];
+        private final byte[] text = new byte[KEYED_PREFIX_BYTES.length + ByteCodec.base64Length(MAC_LENGTH)];
+        private byte[] input = new byte[64];
+
+        private MacSlot(Mac mac) {
+            this.mac = mac;
+        }
+
+        private byte[] input(int size) {
+            if (input.length < size) input = new byte[size];
+            return input;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.madhav.poc.spring.mongo.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * On-access decryption for {@code @Encrypted(lazy = true)} fields. Loaded entities keep the
+ * ciphertext and the field's getter calls {@link #reveal(String)}, which decrypts once and lets
+ * the getter memoize the plaintext back into the field:
+ *
+ * <pre>
+ * public String getEmail() {
+ *     return email = LazyDecryption.reveal(email);
+ * }
+ * </pre>
+ *
+ * Anything else going through that getter decrypts too, including Lombok's {@code toString},
+ * {@code equals} and {@code hashCode}; declare those with {@code doNotUseGetters = true} so
+ * logging an entity or putting it in a set leaves lazy fields encrypted.
+ *
+ * <p>Until {@link #enable(EncryptionUtil)} is called, {@code reveal} returns its argument unchanged.
+ */
+public final class LazyDecryption {
+
+    private static volatile EncryptionUtil encryptionUtil;
+
+    private static final LongAdder DEFERRED = new LongAdder();
+    private static final LongAdder REVEALED = new LongAdder();
+
+    private LazyDecryption() {}
+
+    public static void enable(EncryptionUtil util) {
+        encryptionUtil = util;
+    }
+
+    public static void disable() {
+        encryptionUtil = null;
+    }
+
+    public static String reveal(String value) {
+        EncryptionUtil util = encryptionUtil;
+        if (util == null || !util.isEncrypted(value)) return value;
+        REVEALED.increment();
+        return util.decrypt(value);
+    }
+
+    static void deferred(int count) {
+        if (count > 0) DEFERRED.add(count);
+    }
+
+    /** Encrypted values left as ciphertext when their entity was loaded */
+    public static long deferredCount() {
+        return DEFERRED.sum();
+    }
+
+    /** Values decrypted on first access */
+    public static long revealedCount() {
+        return REVEALED.sum();
+    }
+
+    /** Decrypts skipped so far compared to eager decryption */
+    public static long avoidedCount() {
+        return Math.max(0, DEFERRED.sum() - REVEALED.sum());
+    }
+}
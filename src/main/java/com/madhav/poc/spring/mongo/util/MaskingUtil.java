@@ -0,0 +1,14 @@
+package com.madhav.poc.spring.mongo.util;
+
+public class MaskingUtil {
+
+    private MaskingUtil() {}
+
+    /** {@code madhav@test.com} → {@code m*****@test.com}; values without a local part are fully masked */
+    public static String maskEmail(String email) {
+        if (email == null) return null;
+        int at = email.indexOf('@');
+        if (at <= 0) return "*".repeat(email.length());
+        return email.charAt(0) + "*".repeat(at - 1) + email.substring(at);
+    }
+}
@@ -0,0 +1,73 @@
+package com.madhav.poc.spring.mongo.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits the elements of one large collection across a ForkJoin pool for the encryption walker.
+ * Collections smaller than the threshold stay on the caller's thread. Each element is handled by
+ * index and written back to its own slot, so the order never changes. Inside a ForkJoin worker
+ * (e.g. the bulk insert pool) the split runs in that worker's pool rather than blocking it on
+ * another.
+ */
+public final class ParallelFanOut {
+
+    /** Smallest slice handed to one task; below this, task overhead outweighs the crypto */
+    private static final int MIN_SLICE = 64;
+
+    private static volatile int threshold = 1000;
+    private static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private ParallelFanOut() {}
+
+    /**
+     * @param minElements collections with at least this many elements are split; {@code Integer.MAX_VALUE} disables it
+     * @param forkJoinPool pool used when the caller is not already a ForkJoin worker
+     */
+    public static void configure(int minElements, ForkJoinPool forkJoinPool) {
+        threshold = Math.max(2, minElements);
+        pool = forkJoinPool;
+    }
+
+    static boolean isLarge(int size) {
+        return size >= threshold;
+    }
+
+    /** Runs {@code action} for every index in [0, size), in parallel, and returns when all are done. */
+    static void forEach(int size, IntConsumer action) {
+        ForkJoinPool target = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : pool;
+        int slice = Math.max(MIN_SLICE, size / (target.getParallelism() * 4));
+        Slice task = new Slice(0, size, slice, action);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            target.invoke(task);
+        }
+    }
+
+    private static final class Slice extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int slice;
+        private final IntConsumer action;
+
+        private Slice(int from, int to, int slice, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= slice) {
+                for (int i = from; i < to; i++) action.accept(i);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Slice(from, mid, slice, action), new Slice(mid, to, slice, action));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.madhav.poc.spring.mongo.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.madhav.poc.spring.mongo.codec.EncryptedFieldConverter;
+import com.madhav.poc.spring.mongo.config.EncryptionProperties;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded cache of the ciphertext forms of values used in queries, so hot lookups (the same
+ * customers' emails, over and over) skip AES under every key version.
+ *
+ * <p>Entries are keyed by an HMAC of the plaintext under a random key generated at startup,
+ * never by the plaintext itself, so the cache does not keep query values in the clear and its
+ * keys are useless outside this process. When {@code encryption.query-cache.enabled} is false
+ * every call goes straight to {@link EncryptionUtil}.
+ *
+ * <p>Hashes are not cached: building the key costs an HMAC-SHA256 of the value, as much as the
+ * hash it would save. Lookups hash through {@link Hasher#queryForms} directly.
+ */
+@Component
+public class QueryValueCache {
+
+    private static final String HMAC = "HmacSHA256";
+
+    private final EncryptionUtil encryptionUtil;
+    private final Cache<Key, List<Object>> ciphertexts;
+    private final SecretKeySpec hmacKey;
+    private final CryptoPool<Mac> macs = new CryptoPool<>(this::newMac);
+
+    public QueryValueCache(EncryptionUtil encryptionUtil, EncryptionProperties properties) {
+        this.encryptionUtil = encryptionUtil;
+        EncryptionProperties.QueryCache settings = properties.getQueryCache();
+        this.ciphertexts = settings.isEnabled() ? newCache(settings) : null;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.hmacKey = new SecretKeySpec(key, HMAC);
+    }
+
+    private static Cache<Key, List<Object>> newCache(EncryptionProperties.QueryCache settings) {
+        return Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Every form {@code plain} can be stored in, for a {@code $in} query: the {@code ENC::} string and
+     * the codec-mode binary, each under every key version, so lookups match whatever mode or key wrote the document.
+     */
+    public List<Object> storedForms(String plain) {
+        if (ciphertexts == null) return computeStoredForms(plain);
+        return ciphertexts.get(keyOf(plain), k -> computeStoredForms(plain));
+    }
+
+    private List<Object> computeStoredForms(String plain) {
+        List<Object> forms = new ArrayList<>(encryptionUtil.encryptAllVersions(plain));
+        for (byte[] binary : encryptionUtil.encryptAllVersionsToBinary(plain)) {
+            forms.add(EncryptedFieldConverter.toBinary(binary));
+        }
+        return List.copyOf(forms);
+    }
+
+    /** Null when the cache is disabled */
+    public Cache<?, ?> ciphertextCache() {
+        return ciphertexts;
+    }
+
+    // ======== KEYS ========
+
+    private Key keyOf(String plain) {
+        Mac mac = macs.borrow();
+        try {
+            ByteBuffer digest = ByteBuffer.wrap(mac.doFinal(plain.getBytes(StandardCharsets.UTF_8)));
+            return new Key(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+        } finally {
+            macs.release(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(hmacKey);
+            return mac;
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating " + HMAC, e);
+        }
+    }
+
+    /** The 256-bit HMAC of a plaintext */
+    private record Key(long a, long b, long c, long d) {}
+}